@@ -0,0 +1,60 @@
+package net.ewant;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 雪花算法JFR事件，由{@link SnowFlakeEvents}在运行时按需加载
+ */
+final class SnowFlakeJfrEvents implements SnowFlakeEvents.Sink {
+
+    @Override
+    public Object beginWait(long lastTimestamp) {
+        SequenceExhaustedEvent event = new SequenceExhaustedEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.lastTimestamp = lastTimestamp;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitWait(Object event) {
+        ((SequenceExhaustedEvent) event).commit();
+    }
+
+    @Override
+    public void clockBackwards(long backwardsMillis, boolean rejected) {
+        ClockBackwardsEvent event = new ClockBackwardsEvent();
+        if (event.shouldCommit()) {
+            event.backwardsMillis = backwardsMillis;
+            event.rejected = rejected;
+            event.commit();
+        }
+    }
+
+    @Name("net.ewant.SequenceExhausted")
+    @Label("SnowFlake Sequence Exhausted")
+    @Category("SnowFlake")
+    @Description("同一毫秒的序列号耗尽，等待下一毫秒")
+    static class SequenceExhaustedEvent extends Event {
+        @Label("Last Timestamp")
+        long lastTimestamp;
+    }
+
+    @Name("net.ewant.ClockBackwards")
+    @Label("SnowFlake Clock Backwards")
+    @Category("SnowFlake")
+    @Description("检测到时钟回拨")
+    static class ClockBackwardsEvent extends Event {
+        @Label("Backwards Millis")
+        long backwardsMillis;
+
+        @Label("Rejected")
+        boolean rejected;
+    }
+}
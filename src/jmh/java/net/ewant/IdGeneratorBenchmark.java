@@ -0,0 +1,75 @@
+package net.ewant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PrefixIdGenerator、FixedLengthIdGenerator 的生成与编解码
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdGeneratorBenchmark {
+
+    PrefixIdGenerator prefixGenerator = new PrefixIdGenerator(0, 'T', true);
+    FixedLengthIdGenerator fixedLengthGenerator = new FixedLengthIdGenerator(0, true);
+
+    long serial = fixedLengthGenerator.nextSerial();
+    String prefixCode = prefixGenerator.serialToCode(serial);
+    String fixedLengthCode = fixedLengthGenerator.serialToCode(serial);
+
+    @Benchmark
+    public String prefixNextCode() {
+        return prefixGenerator.nextCode();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String prefixNextCodeMaxThreads() {
+        return prefixGenerator.nextCode();
+    }
+
+    @Benchmark
+    public String prefixSerialToCode() {
+        return prefixGenerator.serialToCode(serial);
+    }
+
+    @Benchmark
+    public long prefixGetSerial() {
+        return prefixGenerator.getSerial(prefixCode);
+    }
+
+    @Benchmark
+    public String fixedLengthNextCode() {
+        return fixedLengthGenerator.nextCode();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String fixedLengthNextCodeMaxThreads() {
+        return fixedLengthGenerator.nextCode();
+    }
+
+    @Benchmark
+    public String fixedLengthSerialToCode() {
+        return fixedLengthGenerator.serialToCode(serial);
+    }
+
+    @Benchmark
+    public long fixedLengthGetSerial() {
+        return fixedLengthGenerator.getSerial(fixedLengthCode);
+    }
+}
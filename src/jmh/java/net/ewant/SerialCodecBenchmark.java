@@ -0,0 +1,58 @@
+package net.ewant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SteerableSerial 与 Base62
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerialCodecBenchmark {
+
+    SteerableSerial steerableSerial = new SteerableSerial();
+    String steerableCode = steerableSerial.getCode();
+
+    long value = new SnowFlake(0, 0).nextId();
+    String base62 = Base62.encode(value);
+
+    @Benchmark
+    public String steerableGetCode() {
+        return steerableSerial.getCode();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String steerableGetCodeMaxThreads() {
+        return steerableSerial.getCode();
+    }
+
+    @Benchmark
+    public boolean steerableVerify() {
+        return steerableSerial.verify(steerableCode);
+    }
+
+    @Benchmark
+    public String base62Encode() {
+        return Base62.encode(value);
+    }
+
+    @Benchmark
+    public long base62Decode() {
+        return Base62.decodeToLong(base62);
+    }
+}
@@ -0,0 +1,65 @@
+package net.ewant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 雪花算法吞吐量：单线程与多线程（Threads.MAX = CPU核数）
+ * 注意：单个实例的上限是 (MAX_SEQUENCE + 1) 个/ms，超出后的耗时就是等待下一毫秒的耗时
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnowFlakeBenchmark {
+
+    @State(Scope.Thread)
+    public static class ThreadLocalState {
+        SnowFlake snowFlake = new SnowFlake(-1, 0, 0, 11);
+        long[] batch = new long[256];
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedState {
+        ConcurrentSnowFlake concurrent = new ConcurrentSnowFlake(-1, 0, 0, 11);
+        StripedSnowFlake striped = new StripedSnowFlake(0, 11 - StripedSnowFlake.laneBitsForCores(6), StripedSnowFlake.laneBitsForCores(6));
+    }
+
+    @Benchmark
+    public long plainNextId(ThreadLocalState state) {
+        return state.snowFlake.nextId();
+    }
+
+    @Benchmark
+    public long[] plainNextIds(ThreadLocalState state) {
+        return state.snowFlake.nextIds(state.batch);
+    }
+
+    @Benchmark
+    public long concurrentNextId(SharedState state) {
+        return state.concurrent.nextId();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long concurrentNextIdMaxThreads(SharedState state) {
+        return state.concurrent.nextId();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long stripedNextIdMaxThreads(SharedState state) {
+        return state.striped.nextId();
+    }
+}
@@ -0,0 +1,90 @@
+package net.ewant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VerifiableSerial 生成、校验与批量生成
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VerifiableSerialBenchmark {
+
+    @Param({"6", "10"})
+    int codeLength;
+
+    int actId = 3;
+
+    String code;
+
+    @Setup
+    public void setup() {
+        code = VerifiableSerial.create(actId, codeLength);
+    }
+
+    @Benchmark
+    public String create() {
+        return VerifiableSerial.create(actId, codeLength);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String createMaxThreads() {
+        return VerifiableSerial.create(actId, codeLength);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return VerifiableSerial.verify(code, true);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean verifyMaxThreads() {
+        return VerifiableSerial.verify(code, true);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public Set<String> generateCodes100k() {
+        return VerifiableSerial.generateCodes(null, 100000, codeLength, actId);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public LongHashSet generateSerials100k() {
+        return VerifiableSerial.generateSerials(null, 100000, codeLength, actId);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public long[] generateSerialsParallel100k() {
+        return VerifiableSerial.generateSerialsParallel(null, 100000, codeLength, actId, Runtime.getRuntime().availableProcessors());
+    }
+}
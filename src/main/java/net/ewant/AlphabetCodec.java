@@ -0,0 +1,293 @@
+package net.ewant;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 查表式编解码器，所有生成器共用
+ *
+ * 1、编码：从右往左直接写入定长的 char[] / byte[]，无需StringBuffer与reverse()，不产生中间对象
+ * 2、解码：预先计算128项的反查表，每个字符O(1)定位，解码复杂度从 O(长度×字符表长度) 降为 O(长度)
+ * 3、字符表长度为2的指数时，使用位运算代替除法；12×5位（Base32）的场景完全展开
+ *
+ * 字符表只支持ASCII字符，实例不可变，可多线程共享。
+ */
+public final class AlphabetCodec {
+
+    private final char[] chars;
+
+    /**
+     * 反查表，下标为字符，值为其在字符表中的位置，-1表示非法字符
+     */
+    private final byte[] indexes = new byte[128];
+
+    private final int base;
+
+    /**
+     * 字符对齐位数，字符表长度不是2的指数时为0
+     */
+    private final int bits;
+
+    private final int mask;
+
+    public AlphabetCodec(String alphabet) {
+        if (alphabet == null || alphabet.length() < 2 || alphabet.length() > 127) {
+            throw new IllegalArgumentException("Invalid alphabet length.");
+        }
+        this.chars = alphabet.toCharArray();
+        this.base = chars.length;
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = -1;
+        }
+        for (int i = 0; i < chars.length; i++) {
+            char ch = chars[i];
+            if (ch >= 128 || indexes[ch] >= 0) {
+                throw new IllegalArgumentException("Alphabet must be unique ASCII chars, illegal char: " + ch);
+            }
+            indexes[ch] = (byte) i;
+        }
+        this.bits = Integer.bitCount(base) == 1 ? Integer.numberOfTrailingZeros(base) : 0;
+        this.mask = base - 1;
+    }
+
+    public int base() {
+        return base;
+    }
+
+    /**
+     * @return 字符对齐位数，字符表长度不是2的指数时为0
+     */
+    public int bits() {
+        return bits;
+    }
+
+    /**
+     * 同一组字符按码点升序排列的编解码器：定长编码的字典序与数值顺序一致
+     * @return
+     */
+    public AlphabetCodec sorted() {
+        char[] sorted = chars.clone();
+        Arrays.sort(sorted);
+        return Arrays.equals(sorted, chars) ? this : new AlphabetCodec(new String(sorted));
+    }
+
+    /**
+     * @return 字符是否按码点升序排列
+     */
+    public boolean isSorted() {
+        for (int i = 1; i < chars.length; i++) {
+            if (chars[i - 1] > chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String alphabet() {
+        return new String(chars);
+    }
+
+    public char charAt(int index) {
+        return chars[index];
+    }
+
+    /**
+     * 定长编码中的单个字符，无需编码整个值
+     * @param value 非负数
+     * @param width 编码位数
+     * @param index 字符位置，从左往右
+     * @return
+     */
+    public char charAt(long value, int width, int index) {
+        int exponent = width - 1 - index;
+        if (bits > 0) {
+            int shift = exponent * bits;
+            return chars[shift >= 64 ? 0 : (int) ((value >>> shift) & mask)];
+        }
+        for (int i = 0; i < exponent && value > 0; i++) {
+            value /= base;
+        }
+        return chars[(int) (value % base)];
+    }
+
+    /**
+     * @param ch 字符
+     * @return 字符在字符表中的位置，非法字符返回-1
+     */
+    public int indexOf(char ch) {
+        return ch < 128 ? indexes[ch] : -1;
+    }
+
+    /**
+     * 计算编码所需位数
+     * @param value 非负数
+     * @param minWidth 最少位数
+     * @return
+     */
+    public int length(long value, int minWidth) {
+        int width = 0;
+        while (value > 0) {
+            value /= base;
+            width++;
+        }
+        return Math.max(width, minWidth);
+    }
+
+    /**
+     * 定长编码，从右往左写入，高位不足补字符表第一个字符，超出部分截断
+     * @param value 非负数
+     * @param dst 目标数组
+     * @param offset 起始位置
+     * @param width 编码位数
+     * @return 写入结束后的位置
+     */
+    public int encode(long value, char[] dst, int offset, int width) {
+        if (bits == 5 && width == 12) {
+            encodeBase32x12(value, dst, offset);
+        } else if (bits > 0) {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                dst[i] = chars[(int) (value & mask)];
+                value >>>= bits;
+            }
+        } else {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                dst[i] = chars[(int) (value % base)];
+                value /= base;
+            }
+        }
+        return offset + width;
+    }
+
+    /**
+     * 12位Base32（60bits）完全展开
+     */
+    private void encodeBase32x12(long value, char[] dst, int offset) {
+        final char[] c = chars;
+        dst[offset + 11] = c[(int) value & 31];
+        dst[offset + 10] = c[(int) (value >>> 5) & 31];
+        dst[offset + 9] = c[(int) (value >>> 10) & 31];
+        dst[offset + 8] = c[(int) (value >>> 15) & 31];
+        dst[offset + 7] = c[(int) (value >>> 20) & 31];
+        dst[offset + 6] = c[(int) (value >>> 25) & 31];
+        dst[offset + 5] = c[(int) (value >>> 30) & 31];
+        dst[offset + 4] = c[(int) (value >>> 35) & 31];
+        dst[offset + 3] = c[(int) (value >>> 40) & 31];
+        dst[offset + 2] = c[(int) (value >>> 45) & 31];
+        dst[offset + 1] = c[(int) (value >>> 50) & 31];
+        dst[offset] = c[(int) (value >>> 55) & 31];
+    }
+
+    /**
+     * 定长编码，写入byte[]，规则同{@link #encode(long, char[], int, int)}
+     */
+    public int encode(long value, byte[] dst, int offset, int width) {
+        if (bits > 0) {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                dst[i] = (byte) chars[(int) (value & mask)];
+                value >>>= bits;
+            }
+        } else {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                dst[i] = (byte) chars[(int) (value % base)];
+                value /= base;
+            }
+        }
+        return offset + width;
+    }
+
+    /**
+     * 定长编码，从buffer当前位置写入并移动position
+     */
+    public void encode(long value, ByteBuffer dst, int width) {
+        int position = dst.position();
+        for (int i = position + width - 1; i >= position; i--) {
+            if (bits > 0) {
+                dst.put(i, (byte) chars[(int) (value & mask)]);
+                value >>>= bits;
+            } else {
+                dst.put(i, (byte) chars[(int) (value % base)]);
+                value /= base;
+            }
+        }
+        dst.position(position + width);
+    }
+
+    /**
+     * 定长编码，追加到StringBuilder末尾
+     */
+    public void encode(long value, StringBuilder dst, int width) {
+        int start = dst.length();
+        dst.setLength(start + width);
+        for (int i = start + width - 1; i >= start; i--) {
+            if (bits > 0) {
+                dst.setCharAt(i, chars[(int) (value & mask)]);
+                value >>>= bits;
+            } else {
+                dst.setCharAt(i, chars[(int) (value % base)]);
+                value /= base;
+            }
+        }
+    }
+
+    /**
+     * 定长编码为字符串
+     */
+    public String encode(long value, int width) {
+        char[] buf = new char[width];
+        encode(value, buf, 0, width);
+        return new String(buf);
+    }
+
+    /**
+     * 解码
+     * @param src 编码
+     * @param offset 起始位置
+     * @param length 解码位数
+     * @return 非负数，包含非法字符时返回-1
+     */
+    public long decode(CharSequence src, int offset, int length) {
+        long sum = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int index = indexOf(src.charAt(i));
+            if (index < 0) {
+                return -1; // 字符非法
+            }
+            sum = bits > 0 ? (sum << bits) | index : sum * base + index;
+        }
+        return sum;
+    }
+
+    /**
+     * 解码byte[]中的编码，规则同{@link #decode(CharSequence, int, int)}
+     */
+    public long decode(byte[] src, int offset, int length) {
+        long sum = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int index = src[i] < 0 ? -1 : indexes[src[i]];
+            if (index < 0) {
+                return -1; // 字符非法
+            }
+            sum = bits > 0 ? (sum << bits) | index : sum * base + index;
+        }
+        return sum;
+    }
+
+    /**
+     * 解码buffer中指定位置的编码，不改变position，规则同{@link #decode(CharSequence, int, int)}
+     */
+    public long decode(ByteBuffer src, int offset, int length) {
+        long sum = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = src.get(i);
+            int index = b < 0 ? -1 : indexes[b];
+            if (index < 0) {
+                return -1; // 字符非法
+            }
+            sum = bits > 0 ? (sum << bits) | index : sum * base + index;
+        }
+        return sum;
+    }
+}
@@ -8,46 +8,30 @@ public class Base62 {
             48, 49, 50, 51, 52, 53, 54, 55, 56, 57, 43, 47};
 
 
+    private static final AlphabetCodec CODEC = new AlphabetCodec(new String(STANDARD_ENCODE_TABLE, 0, 62));
+
+    /**
+     * @param src
+     * @return 包含非法字符时返回-1
+     */
     public static long decodeToLong(String src) {
-        long ret = 0;
-        long count = 1;
-        long sign = 1;
-        if (src.charAt(0) == '-') {
-            sign = -1;
-            src = src.substring(1);
-        }
-        for (int i = src.length() - 1; i > -1; i--) {
-            char ch = src.charAt(i);
-            ret += indexOf(ch) * count;
-            count *= 62;
-        }
-        return sign * ret;
+        int start = src.charAt(0) == '-' ? 1 : 0;
+        long ret = CODEC.decode(src, start, src.length() - start);
+        return start == 1 && ret > 0 ? -ret : ret;
     }
 
     public static String encode(long src) {
-        StringBuffer buff = new StringBuffer();
-        char ch = 0;
+        int start = 0;
         if (src < 0) {
             src = -1 * src;
-            ch = '-';
-        }
-
-        while (src > 0) {
-            buff.append((char)STANDARD_ENCODE_TABLE[(int) (src % 62)]);
-            src /= 62;
-        }
-        if (ch > 0) {
-            buff.append('-');
+            start = 1;
         }
-        return buff.reverse().toString();
-    }
-
-    private static int indexOf(char ch){
-        for(int i=0; i<STANDARD_ENCODE_TABLE.length;i++){
-            if(ch == STANDARD_ENCODE_TABLE[i]){
-                return i;
-            }
+        int width = CODEC.length(src, 0);
+        char[] buf = new char[start + width];
+        if (start == 1) {
+            buf[0] = '-';
         }
-        return -1;
+        CODEC.encode(src, buf, start, width);
+        return new String(buf);
     }
 }
@@ -0,0 +1,44 @@
+package net.ewant;
+
+import java.util.BitSet;
+
+/**
+ * 批量校验结果
+ */
+public class BatchVerifyResult {
+
+    private final BitSet valid;
+
+    private final int[] actIds;
+
+    BatchVerifyResult(BitSet valid, int[] actIds) {
+        this.valid = valid;
+        this.actIds = actIds;
+    }
+
+    /**
+     * @return 第i位为1表示第i个兑换码校验通过
+     */
+    public BitSet getValid() {
+        return valid;
+    }
+
+    /**
+     * @return 第i项为第i个兑换码的活动ID，校验不通过为-1，不含活动ID的为0
+     */
+    public int[] getActIds() {
+        return actIds;
+    }
+
+    public boolean isValid(int index) {
+        return valid.get(index);
+    }
+
+    public int size() {
+        return actIds.length;
+    }
+
+    public int validCount() {
+        return valid.cardinality();
+    }
+}
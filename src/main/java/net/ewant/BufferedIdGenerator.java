@@ -0,0 +1,241 @@
+package net.ewant;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 预生成编码的缓冲生成器
+ *
+ * 后台线程批量生成序列号并编码，放入单生产者/多消费者的无锁环形缓冲区；
+ * nextCode()/nextSerial() 只需一次CAS移动读指针即可取走，不再读取时钟、不做编码，也不会遇到序列号耗尽的等待。
+ * 缓冲区水位降到低水位时唤醒后台线程补充到高水位；缓冲区取空时直接调用被装饰的生成器生成。
+ * 后台线程生成失败时退出，缓冲区中剩余的ID取完后，nextCode()/nextSerial()抛出IllegalStateException（cause为原异常）。
+ *
+ * 注意：
+ * 1、被装饰的生成器会同时被后台线程与调用线程使用，必须是线程安全的（如 concurrent = true 创建的生成器）
+ * 2、取到的ID是预先生成的，时间戳早于取号时间，且不同线程间不保证严格递增
+ */
+public class BufferedIdGenerator implements IdGenerator, Closeable {
+
+    private static final int FILL_BATCH = 256;
+
+    private final IdGenerator delegate;
+
+    private final long[] serials;
+
+    private final String[] codes;
+
+    private final int mask;
+
+    private final int lowWatermark;
+
+    private final int highWatermark;
+
+    /**
+     * 读指针，消费者CAS推进
+     */
+    private final AtomicLong head = new ConcurrentSnowFlake.PaddedAtomicLong();
+
+    /**
+     * 写指针，只有后台线程推进
+     */
+    private final AtomicLong tail = new ConcurrentSnowFlake.PaddedAtomicLong();
+
+    private final LongAdder fallbackCount = new LongAdder();
+
+    private final Thread producer;
+
+    private volatile boolean producerWaiting;
+
+    private volatile boolean closed;
+
+    /**
+     * 后台线程生成失败的异常，null表示正常
+     */
+    private volatile Throwable failure;
+
+    public BufferedIdGenerator(IdGenerator delegate, int capacity) {
+        this(delegate, capacity, capacity / 4, capacity);
+    }
+
+    /**
+     * @param delegate 被装饰的生成器，必须线程安全
+     * @param capacity 缓冲区容量，向上取整为2的指数
+     * @param lowWatermark 低水位，剩余个数不超过该值时开始补充
+     * @param highWatermark 高水位，每次补充到该个数为止
+     */
+    public BufferedIdGenerator(IdGenerator delegate, int capacity, int lowWatermark, int highWatermark) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Argument 'delegate' can't be null!");
+        }
+        if (capacity < 2 || capacity > 1 << 24) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        if (highWatermark < 1 || highWatermark > size || lowWatermark < 0 || lowWatermark >= highWatermark) {
+            throw new IllegalArgumentException("Invalid watermarks, low: " + lowWatermark + ", high: " + highWatermark);
+        }
+        this.delegate = delegate;
+        this.serials = new long[size];
+        this.codes = new String[size];
+        this.mask = size - 1;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.producer = new Thread(this::produce, "buffered-id-producer");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    private void produce() {
+        long[] batch = new long[FILL_BATCH];
+        long cleared = 0;
+        try {
+            while (!closed) {
+                // 释放已取走位置上的编码引用；只清理读指针之前的位置，不会与正在读取的消费者冲突
+                long h = head.get();
+                for (; cleared < h; cleared++) {
+                    codes[(int) cleared & mask] = null;
+                }
+                long t = tail.get();
+                int free = highWatermark - (int) (t - h);
+                if (free <= 0) {
+                    producerWaiting = true;
+                    // 挂起前再检查一次水位，避免消费者在设置标记之前取走而错过唤醒
+                    if (tail.get() - head.get() > lowWatermark && !closed) {
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                    }
+                    producerWaiting = false;
+                    continue;
+                }
+                // 只生成空闲位置需要的个数，不再多生成后丢弃
+                int count = Math.min(free, FILL_BATCH);
+                long[] fill = count == FILL_BATCH ? batch : new long[count];
+                delegate.nextSerials(fill);
+                for (int i = 0; i < count; i++) {
+                    int index = (int) (t + i) & mask;
+                    serials[index] = fill[i];
+                    codes[index] = delegate.serialToCode(fill[i]);
+                }
+                tail.lazySet(t + count);
+            }
+        } catch (Throwable e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * 缓冲区已取空且后台线程已因异常退出时，将异常抛给调用方
+     */
+    private void checkFailure() {
+        Throwable e = failure;
+        if (e != null) {
+            throw new IllegalStateException("Buffered id producer failed", e);
+        }
+    }
+
+    public String nextCode() {
+        for (;;) {
+            long h = head.get();
+            if (h >= tail.get()) {
+                checkFailure();
+                fallbackCount.increment();
+                return delegate.nextCode();
+            }
+            // 先读后CAS：CAS成功说明该位置在读取期间没有被生产者覆盖
+            String code = codes[(int) h & mask];
+            if (head.compareAndSet(h, h + 1)) {
+                onTaken(h);
+                return code;
+            }
+        }
+    }
+
+    public long nextSerial() {
+        for (;;) {
+            long h = head.get();
+            if (h >= tail.get()) {
+                checkFailure();
+                fallbackCount.increment();
+                return delegate.nextSerial();
+            }
+            long serial = serials[(int) h & mask];
+            if (head.compareAndSet(h, h + 1)) {
+                onTaken(h);
+                return serial;
+            }
+        }
+    }
+
+    /**
+     * 取走后剩余个数降到低水位时唤醒后台线程
+     */
+    private void onTaken(long h) {
+        if (producerWaiting && tail.get() - h - 1 <= lowWatermark) {
+            LockSupport.unpark(producer);
+        }
+    }
+
+    public long getSerial(String code) {
+        return delegate.getSerial(code);
+    }
+
+    public String serialToCode(long serial) {
+        return delegate.serialToCode(serial);
+    }
+
+    public int serialToCode(long serial, char[] dst, int offset) {
+        return delegate.serialToCode(serial, dst, offset);
+    }
+
+    public long[] serialRange(long fromMillis, long toMillis) {
+        return delegate.serialRange(fromMillis, toMillis);
+    }
+
+    public long[] serialRange(long fromMillis, long toMillis, long instanceId) {
+        return delegate.serialRange(fromMillis, toMillis, instanceId);
+    }
+
+    public int codeLength(long serial) {
+        return delegate.codeLength(serial);
+    }
+
+    public char codeCharAt(long serial, int index) {
+        return delegate.codeCharAt(serial, index);
+    }
+
+    /**
+     * @return 缓冲区当前剩余个数
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * @return 缓冲区为空、直接调用被装饰生成器的次数
+     */
+    public long getFallbackCount() {
+        return fallbackCount.sum();
+    }
+
+    /**
+     * 停止后台补充，缓冲区中剩余的ID取完后直接使用被装饰的生成器
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(producer);
+    }
+
+    public static void main(String[] args) {
+        BufferedIdGenerator generator = new BufferedIdGenerator(new FixedLengthIdGenerator(1, true), 4096);
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+        for (int i = 0; i < 10; i++) {
+            System.out.println(generator.nextCode());
+        }
+        System.out.println("buffered: " + generator.size() + ", fallback: " + generator.getFallbackCount());
+        generator.close();
+    }
+}
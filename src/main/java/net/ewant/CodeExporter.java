@@ -0,0 +1,254 @@
+package net.ewant;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.function.LongConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * 流式导出兑换码/编号到文件
+ *
+ * 按块生成、编码并直接写入FileChannel（或内存映射区域），不在堆上保留整个结果集，内存占用只与块大小有关。
+ * 两种记录格式都是定长的：
+ * TEXT   每行一个编码，以'\n'结尾
+ * BINARY 每条记录为8字节（大端）序列
+ *
+ * 支持断点续传：再次导出到同一文件时，会先校验已有记录，从第一条不完整的记录（写了一半，或内存映射写入时
+ * 文件已扩展但数据未落盘而留下的全0记录）处截断，然后从已有记录数继续写到total为止。
+ * 内存映射写入时每块写完都会force()落盘，中断时只有最后一块可能不完整。
+ * VerifiableSerial兑换码有两种导出方式：
+ * 1、随机数据位：需要去重集合，内存与total成正比，续传时会将已有记录读回去重集合，保证整个文件不重复
+ * 2、置换模式（带活动密钥）：第i条记录即第i个index的兑换码，天然不重复，内存只与块大小有关，适合上亿条的导出
+ */
+public class CodeExporter {
+
+    public enum Format {
+        TEXT, BINARY
+    }
+
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final Format format;
+
+    private final int chunkSize;
+
+    private final boolean mapped;
+
+    public CodeExporter(Format format) {
+        this(format, DEFAULT_CHUNK_SIZE, false);
+    }
+
+    /**
+     * @param format 记录格式
+     * @param chunkSize 每块记录数
+     * @param mapped 是否通过内存映射写入（FileChannel需以读写方式打开）
+     */
+    public CodeExporter(Format format, int chunkSize, boolean mapped) {
+        if (format == null) {
+            throw new IllegalArgumentException("Argument 'format' can't be null!");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        this.format = format;
+        this.chunkSize = chunkSize;
+        this.mapped = mapped;
+    }
+
+    /**
+     * 导出IdGenerator生成的编号，编号本身不重复，续传时无需回读
+     * @param generator 生成器
+     * @param channel 目标文件
+     * @param total 文件中最终的记录数
+     * @return 本次新写入的记录数
+     * @throws IOException
+     */
+    public long export(IdGenerator generator, FileChannel channel, long total) throws IOException {
+        int codeWidth = generator.serialToCode(0L).length();
+        return export(channel, total, codeWidth, (serials, fromIndex, count) -> {
+            long[] chunk = count == serials.length ? serials : new long[count];
+            generator.nextSerials(chunk);
+            if (chunk != serials) {
+                System.arraycopy(chunk, 0, serials, 0, count);
+            }
+        }, generator::serialToCode, null, null);
+    }
+
+    /**
+     * 导出VerifiableSerial兑换码（随机数据位），去重集合每条记录约占16字节，条数超过集合上限时请使用置换模式导出
+     * @param actId 活动ID
+     * @param codeLen 单个兑换码长度
+     * @param historySerials 历史生成的序列，可为null
+     * @param offHeap 去重集合是否放在堆外
+     * @param channel 目标文件
+     * @param total 文件中最终的记录数
+     * @return 本次新写入的记录数
+     * @throws IOException
+     */
+    public long export(int actId, int codeLen, LongHashSet historySerials, boolean offHeap, FileChannel channel, long total) throws IOException {
+        int codeWidth = VerifiableSerial.codeLengthOf(actId, codeLen);
+        int codeLength = VerifiableSerial.fitCodeLength(actId, codeLen);
+        long randRange = 1L << VerifiableSerial.randBitLength(actId, codeLength);
+        if (total > LongHashSet.maxSize(offHeap) || total > randRange / 2) {
+            throw new IllegalArgumentException("Too many codes to dedup in memory: " + total + ", export by permutation instead");
+        }
+        LongHashSet generatedSerials = new LongHashSet((int) total, offHeap);
+        SplittableRandom random = new SplittableRandom();
+        return export(channel, total, codeWidth, (serials, fromIndex, count) -> {
+            int i = 0;
+            while (i < count) {
+                long serial = VerifiableSerial.composeSerial(actId, codeLength, random.nextLong(randRange));
+                if ((historySerials == null || !historySerials.contains(serial)) && generatedSerials.add(serial)) {
+                    serials[i++] = serial;
+                }
+            }
+        }, (serial, dst, offset) -> VerifiableSerial.serialToCode(serial, actId, codeLen, dst, offset),
+                code -> VerifiableSerial.getSerial(code, actId > 0), generatedSerials::add);
+    }
+
+    /**
+     * 以置换模式导出VerifiableSerial兑换码，第i条记录为index为i的兑换码（同{@link VerifiableSerial#createAt}），
+     * 不需要去重集合，续传时无需回读
+     * @param key 活动密钥
+     * @param actId 活动ID
+     * @param codeLen 单个兑换码长度
+     * @param channel 目标文件
+     * @param total 文件中最终的记录数
+     * @return 本次新写入的记录数
+     * @throws IOException
+     */
+    public long export(long key, int actId, int codeLen, FileChannel channel, long total) throws IOException {
+        FeistelPermutation permutation = VerifiableSerial.permutation(key, actId, codeLen);
+        if (total > (1L << permutation.bits())) {
+            throw new IllegalArgumentException("Too many codes for code length " + codeLen + ": " + total);
+        }
+        int codeWidth = VerifiableSerial.codeLengthOf(actId, codeLen);
+        return export(channel, total, codeWidth, (serials, fromIndex, count) -> {
+            for (int i = 0; i < count; i++) {
+                serials[i] = VerifiableSerial.serialAt(permutation, actId, codeLen, fromIndex + i);
+            }
+        }, (serial, dst, offset) -> VerifiableSerial.serialToCode(serial, actId, codeLen, dst, offset), null, null);
+    }
+
+    private long export(FileChannel channel, long total, int codeWidth, SerialSource source, CodeEncoder encoder,
+                        ToLongFunction<String> decoder, LongConsumer replay) throws IOException {
+        int recordWidth = format == Format.BINARY ? 8 : codeWidth + 1;
+        long existing = channel.size() / recordWidth;
+        if (existing > 0) {
+            existing = scan(channel, existing, recordWidth, codeWidth, decoder, replay);
+        }
+        if (channel.size() != existing * recordWidth) {
+            channel.truncate(existing * recordWidth);// 丢弃中断时不完整的记录
+        }
+        long position = existing * recordWidth;
+        long[] serials = new long[chunkSize];
+        char[] code = new char[codeWidth];
+        ByteBuffer buffer = mapped ? null : ByteBuffer.allocate(chunkSize * recordWidth);
+        long written = 0;
+        while (existing + written < total) {
+            int count = (int) Math.min(chunkSize, total - existing - written);
+            source.fill(serials, existing + written, count);
+            ByteBuffer out = mapped ? channel.map(FileChannel.MapMode.READ_WRITE, position, (long) count * recordWidth) : buffer;
+            if (!mapped) {
+                out.clear();
+            }
+            for (int i = 0; i < count; i++) {
+                if (format == Format.BINARY) {
+                    out.putLong(serials[i]);
+                } else {
+                    if (encoder.encode(serials[i], code, 0) != codeWidth) {
+                        throw new IllegalStateException("Code width changed, expected: " + codeWidth);
+                    }
+                    for (char ch : code) {
+                        out.put((byte) ch);
+                    }
+                    out.put((byte) '\n');
+                }
+            }
+            if (mapped) {
+                ((MappedByteBuffer) out).force();
+            } else {
+                out.flip();
+                long writePosition = position;
+                while (out.hasRemaining()) {
+                    writePosition += channel.write(out, writePosition);
+                }
+            }
+            position += (long) count * recordWidth;
+            written += count;
+        }
+        return written;
+    }
+
+    /**
+     * 校验已有记录，并将完整的记录回放给去重集合
+     * @param replay 去重集合，null表示只校验
+     * @return 从文件开头起连续完整的记录数
+     */
+    private long scan(FileChannel channel, long existing, int recordWidth, int codeWidth,
+                      ToLongFunction<String> decoder, LongConsumer replay) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(chunkSize * recordWidth);
+        byte[] code = new byte[codeWidth];
+        long position = 0;
+        long end = existing * recordWidth;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file at: " + (position + buffer.position()));
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (format == Format.BINARY) {
+                    long serial = buffer.getLong();
+                    if (serial == 0L) {
+                        return position / recordWidth;
+                    }
+                    if (replay != null) {
+                        replay.accept(serial);
+                    }
+                } else {
+                    buffer.get(code);
+                    if (buffer.get() != '\n' || indexOfZero(code) >= 0) {
+                        return position / recordWidth;
+                    }
+                    if (replay != null) {
+                        replay.accept(decoder.applyAsLong(new String(code, StandardCharsets.US_ASCII)));
+                    }
+                }
+                position += recordWidth;
+            }
+        }
+        return existing;
+    }
+
+    private static int indexOfZero(byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private interface SerialSource {
+        /**
+         * @param fromIndex 第一条记录在文件中的序号
+         */
+        void fill(long[] serials, long fromIndex, int count);
+    }
+
+    private interface CodeEncoder {
+        /**
+         * @return 写入结束后的位置
+         */
+        int encode(long serial, char[] dst, int offset);
+    }
+}
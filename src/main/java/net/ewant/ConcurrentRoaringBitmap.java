@@ -0,0 +1,463 @@
+package net.ewant;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 无锁的roaring风格位图，值域为 [0, 2^bits)
+ *
+ * 按高位分桶，每个桶（容器）存放其余的低位：
+ * 1、稀疏时为有序数组（数组容器），按低位位数使用char[]、int[]或long[]，写时复制，CAS替换引用
+ * 2、数组占用的位数超过同一个桶的位图时（仅低位不超过24位），转为位图容器，CAS设置单个位；位图容器不会再转回数组容器
+ * 分桶方式有两种：
+ * 1、稀疏（随机分布的值）：按值的高16位分桶（值不足16位时按全部位数），桶数组预先分配，每个元素约为低位的位数（16/32/64位）加上容器的对象头分摊
+ * 2、稠密（如按计数器生成的index）：固定低16位、按 value>>>16 分桶，每个容器最多65536个值，满4096个后转为8KB的位图，
+ *    每个元素约1位；桶数组只预分配前2^12个（覆盖 [0, 2^28)），更大的高位放入溢出哈希表
+ * 创建容器只是对桶数组的一次CAS（溢出表为putIfAbsent/replace），读写全程无锁。
+ */
+final class ConcurrentRoaringBitmap {
+
+    static final byte CHAR_CONTAINER = 0;
+
+    static final byte BITMAP_CONTAINER = 1;
+
+    static final byte INT_CONTAINER = 2;
+
+    static final byte LONG_CONTAINER = 3;
+
+    /**
+     * 高位位数，最多2^16个容器
+     */
+    private static final int HIGH_BITS = 16;
+
+    /**
+     * 稠密模式预分配的桶数组位数
+     */
+    private static final int DENSE_TABLE_BITS = 12;
+
+    /**
+     * 低位超过该位数时不转为位图容器（单个位图超过2MB）
+     */
+    private static final int MAX_BITMAP_LOW_BITS = 24;
+
+    /**
+     * 估算内存时的对象头、引用字节数（64位JVM、开启压缩指针）
+     */
+    private static final int ARRAY_HEADER = 16;
+
+    private static final int OBJECT_HEADER = 16;
+
+    private static final int REFERENCE = 4;
+
+    /**
+     * 溢出哈希表每项的估算字节数（Node + Long键 + 表中引用）
+     */
+    private static final int OVERFLOW_ENTRY = 56;
+
+    private final int bits;
+
+    private final boolean dense;
+
+    private final int lowBits;
+
+    private final long lowMask;
+
+    /**
+     * 数组容器的类型
+     */
+    private final byte arrayType;
+
+    /**
+     * 位图容器的long个数，0表示不使用位图容器
+     */
+    private final int bitmapWords;
+
+    /**
+     * 数组容器最多元素个数，超过后转为位图容器
+     */
+    private final int arrayMax;
+
+    /**
+     * 高位 -> 容器（char[]、int[]、long[] 或 AtomicLongArray），null表示空
+     */
+    private final AtomicReferenceArray<Object> containers;
+
+    /**
+     * 高位超出桶数组的容器（仅稠密模式）
+     */
+    private final ConcurrentHashMap<Long, Object> overflow = new ConcurrentHashMap<>();
+
+    /**
+     * @param bits 值的位数，1 ~ 63
+     * @param dense true：值稠密（如连续的计数器index），固定低16位；false：值随机分布，按高16位分桶
+     */
+    ConcurrentRoaringBitmap(int bits, boolean dense) {
+        if (bits < 1 || bits > 63) {
+            throw new IllegalArgumentException("Invalid bitmap bits: " + bits);
+        }
+        this.bits = bits;
+        this.dense = dense;
+        int tableBits;
+        if (dense) {
+            this.lowBits = Math.min(bits, 16);
+            tableBits = Math.min(bits - lowBits, DENSE_TABLE_BITS);
+        } else {
+            tableBits = Math.min(bits, HIGH_BITS);
+            this.lowBits = bits - tableBits;
+        }
+        this.lowMask = (1L << lowBits) - 1;
+        this.arrayType = lowBits <= 16 ? CHAR_CONTAINER : lowBits <= 31 ? INT_CONTAINER : LONG_CONTAINER;
+        this.bitmapWords = lowBits <= MAX_BITMAP_LOW_BITS ? 1 << Math.max(0, lowBits - 6) : 0;
+        this.arrayMax = bitmapWords > 0 ? bitmapWords * 64 / elementBits(arrayType) : Integer.MAX_VALUE;
+        this.containers = new AtomicReferenceArray<>(1 << tableBits);
+    }
+
+    private static int elementBits(byte arrayType) {
+        return arrayType == CHAR_CONTAINER ? 16 : arrayType == INT_CONTAINER ? 32 : 64;
+    }
+
+    int bits() {
+        return bits;
+    }
+
+    boolean dense() {
+        return dense;
+    }
+
+    private Object container(long high) {
+        return high < containers.length() ? containers.get((int) high) : overflow.get(high);
+    }
+
+    private boolean replace(long high, Object expect, Object update) {
+        if (high < containers.length()) {
+            return containers.compareAndSet((int) high, expect, update);
+        }
+        // 容器都是数组，equals即引用相等
+        return expect == null ? overflow.putIfAbsent(high, update) == null : overflow.replace(high, expect, update);
+    }
+
+    /**
+     * @return 是否新增（原本不存在）
+     */
+    boolean add(long value) {
+        checkValue(value);
+        long high = value >>> lowBits;
+        long low = value & lowMask;
+        for (;;) {
+            Object container = container(high);
+            if (container instanceof AtomicLongArray) {
+                return setBit((AtomicLongArray) container, (int) low);
+            }
+            int pos = container == null ? -1 : search(container, low);
+            if (pos >= 0) {
+                return false;
+            }
+            int length = container == null ? 0 : length(container);
+            Object next;
+            if (length >= arrayMax) {
+                AtomicLongArray bitmap = new AtomicLongArray(bitmapWords);
+                for (int i = 0; i < length; i++) {
+                    setBit(bitmap, (int) get(container, i));
+                }
+                setBit(bitmap, (int) low);
+                next = bitmap;
+            } else {
+                next = insert(container, length, -pos - 1, low);
+            }
+            if (replace(high, container, next)) {
+                return true;
+            }
+        }
+    }
+
+    boolean contains(long value) {
+        if (value < 0 || value >>> bits != 0) {
+            return false;
+        }
+        Object container = container(value >>> lowBits);
+        if (container == null) {
+            return false;
+        }
+        long low = value & lowMask;
+        if (container instanceof AtomicLongArray) {
+            return (((AtomicLongArray) container).get((int) (low >>> 6)) & (1L << low)) != 0;
+        }
+        return search(container, low) >= 0;
+    }
+
+    private void checkValue(long value) {
+        if (value < 0 || value >>> bits != 0) {
+            throw new IllegalArgumentException("Value out of " + bits + " bits: " + value);
+        }
+    }
+
+    private static boolean setBit(AtomicLongArray bitmap, int low) {
+        int word = low >>> 6;
+        long bit = 1L << low;
+        for (;;) {
+            long current = bitmap.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+            if (bitmap.compareAndSet(word, current, current | bit)) {
+                return true;
+            }
+        }
+    }
+
+    private static int search(Object array, long low) {
+        if (array instanceof char[]) {
+            return Arrays.binarySearch((char[]) array, (char) low);
+        }
+        if (array instanceof int[]) {
+            return Arrays.binarySearch((int[]) array, (int) low);
+        }
+        return Arrays.binarySearch((long[]) array, low);
+    }
+
+    private static int length(Object array) {
+        if (array instanceof char[]) {
+            return ((char[]) array).length;
+        }
+        if (array instanceof int[]) {
+            return ((int[]) array).length;
+        }
+        return ((long[]) array).length;
+    }
+
+    private static long get(Object array, int index) {
+        if (array instanceof char[]) {
+            return ((char[]) array)[index];
+        }
+        if (array instanceof int[]) {
+            return ((int[]) array)[index];
+        }
+        return ((long[]) array)[index];
+    }
+
+    /**
+     * 复制并在insert位置插入low
+     */
+    private Object insert(Object array, int length, int insert, long low) {
+        Object grown;
+        if (arrayType == CHAR_CONTAINER) {
+            char[] values = new char[length + 1];
+            values[insert] = (char) low;
+            grown = values;
+        } else if (arrayType == INT_CONTAINER) {
+            int[] values = new int[length + 1];
+            values[insert] = (int) low;
+            grown = values;
+        } else {
+            long[] values = new long[length + 1];
+            values[insert] = low;
+            grown = values;
+        }
+        if (array != null) {
+            System.arraycopy(array, 0, grown, 0, insert);
+            System.arraycopy(array, insert, grown, insert + 1, length - insert);
+        }
+        return grown;
+    }
+
+    long cardinality() {
+        long count = 0;
+        for (int i = 0; i < containers.length(); i++) {
+            count += cardinality(containers.get(i));
+        }
+        for (Object container : overflow.values()) {
+            count += cardinality(container);
+        }
+        return count;
+    }
+
+    private long cardinality(Object container) {
+        if (container instanceof AtomicLongArray) {
+            AtomicLongArray bitmap = (AtomicLongArray) container;
+            long count = 0;
+            for (int w = 0; w < bitmapWords; w++) {
+                count += Long.bitCount(bitmap.get(w));
+            }
+            return count;
+        }
+        return container == null ? 0 : length(container);
+    }
+
+    /**
+     * 估算占用的堆内存字节数：桶数组 + 溢出表 + 各容器的对象头与数据（按开启压缩指针的64位JVM估算）
+     */
+    long memoryBytes() {
+        long bytes = align(ARRAY_HEADER + (long) REFERENCE * containers.length()) + OBJECT_HEADER;
+        for (int i = 0; i < containers.length(); i++) {
+            bytes += memoryBytes(containers.get(i));
+        }
+        for (Object container : overflow.values()) {
+            bytes += OVERFLOW_ENTRY + memoryBytes(container);
+        }
+        return bytes;
+    }
+
+    private long memoryBytes(Object container) {
+        if (container instanceof AtomicLongArray) {
+            return OBJECT_HEADER + align(ARRAY_HEADER + 8L * bitmapWords);
+        }
+        return container == null ? 0 : align(ARRAY_HEADER + (long) length(container) * elementBits(arrayType) / 8);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * 各容器在调用时刻的状态（位图容器复制为long[]，数组容器本身不可变），快照期间新增的值可能包含也可能不包含
+     * @return [高位, 容器] 列表
+     */
+    List<Object[]> snapshot() {
+        List<Object[]> snapshot = new ArrayList<>();
+        for (int i = 0; i < containers.length(); i++) {
+            snapshot(snapshot, i, containers.get(i));
+        }
+        for (Map.Entry<Long, Object> entry : overflow.entrySet()) {
+            snapshot(snapshot, entry.getKey(), entry.getValue());
+        }
+        return snapshot;
+    }
+
+    private void snapshot(List<Object[]> snapshot, long high, Object container) {
+        if (container instanceof AtomicLongArray) {
+            AtomicLongArray bitmap = (AtomicLongArray) container;
+            long[] words = new long[bitmapWords];
+            for (int w = 0; w < bitmapWords; w++) {
+                words[w] = bitmap.get(w);
+            }
+            snapshot.add(new Object[]{high, new BitmapWords(words)});
+        } else if (container != null) {
+            snapshot.add(new Object[]{high, container});
+        }
+    }
+
+    /**
+     * 快照中的位图容器，与long[]数组容器区分
+     */
+    private static final class BitmapWords {
+        private final long[] words;
+
+        private BitmapWords(long[] words) {
+            this.words = words;
+        }
+    }
+
+    /**
+     * 序列化后的字节数
+     */
+    static long serializedSize(List<Object[]> snapshot) {
+        long size = 4 + 1 + 4;
+        for (Object[] entry : snapshot) {
+            size += 8 + 1 + 4;
+            Object container = entry[1];
+            if (container instanceof BitmapWords) {
+                size += ((BitmapWords) container).words.length * 8L;
+            } else if (container instanceof char[]) {
+                size += ((char[]) container).length * 2L;
+            } else if (container instanceof int[]) {
+                size += ((int[]) container).length * 4L;
+            } else {
+                size += ((long[]) container).length * 8L;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 格式：值位数(4) + 是否稠密(1) + 容器数(4) + [高位(8) + 类型(1) + 元素数(4) + 数据] * 容器数
+     */
+    void write(List<Object[]> snapshot, ByteBuffer dst) {
+        dst.putInt(bits).put((byte) (dense ? 1 : 0)).putInt(snapshot.size());
+        for (Object[] entry : snapshot) {
+            dst.putLong((Long) entry[0]);
+            Object container = entry[1];
+            if (container instanceof BitmapWords) {
+                long[] words = ((BitmapWords) container).words;
+                dst.put(BITMAP_CONTAINER).putInt(words.length);
+                for (long word : words) {
+                    dst.putLong(word);
+                }
+            } else if (container instanceof char[]) {
+                char[] values = (char[]) container;
+                dst.put(CHAR_CONTAINER).putInt(values.length);
+                for (char v : values) {
+                    dst.putChar(v);
+                }
+            } else if (container instanceof int[]) {
+                int[] values = (int[]) container;
+                dst.put(INT_CONTAINER).putInt(values.length);
+                for (int v : values) {
+                    dst.putInt(v);
+                }
+            } else {
+                long[] values = (long[]) container;
+                dst.put(LONG_CONTAINER).putInt(values.length);
+                for (long v : values) {
+                    dst.putLong(v);
+                }
+            }
+        }
+    }
+
+    static ConcurrentRoaringBitmap read(ByteBuffer src) {
+        int bits = src.getInt();
+        ConcurrentRoaringBitmap bitmap = new ConcurrentRoaringBitmap(bits, src.get() != 0);
+        int count = src.getInt();
+        for (int i = 0; i < count; i++) {
+            long high = src.getLong();
+            byte type = src.get();
+            int length = src.getInt();
+            if (high < 0 || high >>> (bits - bitmap.lowBits) != 0 || length < 0) {
+                throw new IllegalArgumentException("Corrupted container, high: " + high + ", length: " + length);
+            }
+            Object container;
+            if (type == BITMAP_CONTAINER) {
+                if (length != bitmap.bitmapWords) {
+                    throw new IllegalArgumentException("Corrupted bitmap container, words: " + length);
+                }
+                AtomicLongArray words = new AtomicLongArray(length);
+                for (int w = 0; w < length; w++) {
+                    words.set(w, src.getLong());
+                }
+                container = words;
+            } else {
+                if (type != bitmap.arrayType || length > bitmap.arrayMax) {
+                    throw new IllegalArgumentException("Corrupted array container, type: " + type + ", size: " + length);
+                }
+                if (type == CHAR_CONTAINER) {
+                    char[] values = new char[length];
+                    src.asCharBuffer().get(values);
+                    src.position(src.position() + length * 2);
+                    container = values;
+                } else if (type == INT_CONTAINER) {
+                    int[] values = new int[length];
+                    src.asIntBuffer().get(values);
+                    src.position(src.position() + length * 4);
+                    container = values;
+                } else {
+                    long[] values = new long[length];
+                    src.asLongBuffer().get(values);
+                    src.position(src.position() + length * 8);
+                    container = values;
+                }
+            }
+            if (high < bitmap.containers.length()) {
+                bitmap.containers.set((int) high, container);
+            } else {
+                bitmap.overflow.put(high, container);
+            }
+        }
+        return bitmap;
+    }
+}
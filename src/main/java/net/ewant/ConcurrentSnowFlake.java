@@ -0,0 +1,165 @@
+package net.ewant;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 线程安全、无锁的雪花算法
+ *
+ * 将 上一次时间戳 与 序列号 打包在同一个long中（时间戳 << SEQUENCE_BIT | 序列号），
+ * 通过一次CAS同时推进两者，因此多个线程共享同一实例时也不会产生重复ID，且无需synchronized。
+ *
+ * 每次CAS成功，状态值严格递增，拼接得到的ID也就严格递增、不会重复。
+ */
+public class ConcurrentSnowFlake extends SnowFlake {
+
+    /**
+     * 打包后的状态：上一次时间戳 << SEQUENCE_BIT | 序列号
+     */
+    private final AtomicLong state = new PaddedAtomicLong();
+
+    private final int sequenceBits;
+
+    private final long maxSequence;
+
+    public ConcurrentSnowFlake(long dataCenterId, long machineId) {
+        this(dataCenterId, 4, machineId, 4);
+    }
+
+    public ConcurrentSnowFlake(InstanceIdAllocator.InstanceLease lease) {
+        this(-1, 0, lease.getInstanceId(), lease.getInstanceBits());
+    }
+
+    public ConcurrentSnowFlake(long dataCenterId, int dataCenterBits, long machineId, int machineBits) {
+        super(dataCenterId, dataCenterBits, machineId, machineBits);
+        this.sequenceBits = getSequenceBits();
+        this.maxSequence = getMaxSequence();
+    }
+
+    public ConcurrentSnowFlake(SnowFlakeLayout layout, long dataCenterId, long machineId) {
+        super(layout, dataCenterId, machineId);
+        this.sequenceBits = getSequenceBits();
+        this.maxSequence = getMaxSequence();
+    }
+
+    @Override
+    public long nextId() {
+        for (;;) {
+            // 先读状态再读时钟：状态里的时间戳必然早于本次读到的时钟，否则就是时钟真的回拨了（或突发模式下逻辑时钟领先）
+            long prev = state.get();
+            long lastTimestamp = prev >>> sequenceBits;
+            long currentTime = currentMill(lastTimestamp);
+            long next;
+            if (currentTime == lastTimestamp) {
+                if ((prev & maxSequence) == maxSequence) {
+                    //同一毫秒的序列数已经达到最大，等待（突发模式下借用）下一个毫秒
+                    currentTime = tilNextMill(lastTimestamp);
+                    next = currentTime << sequenceBits;
+                } else {
+                    next = prev + 1;
+                }
+            } else {
+                next = currentTime << sequenceBits;
+            }
+            if (state.compareAndSet(prev, next)) {
+                SnowFlakeMetrics metrics = this.metrics;
+                if (metrics != null) {
+                    metrics.onIssued(1);
+                }
+                return composeId(currentTime, next & maxSequence);
+            }
+        }
+    }
+
+    @Override
+    int nextBlock(long[] dst, int offset, int length) {
+        for (;;) {
+            long prev = state.get();
+            long lastTimestamp = prev >>> sequenceBits;
+            long currentTime = currentMill(lastTimestamp);
+            long first = 0L;
+            if (currentTime == lastTimestamp) {
+                if ((prev & maxSequence) == maxSequence) {
+                    currentTime = tilNextMill(lastTimestamp);
+                } else {
+                    first = (prev & maxSequence) + 1;
+                }
+            }
+            int count = (int) Math.min(length, maxSequence - first + 1);
+            // 一次CAS预留 [first, first + count) 这一段序列号
+            long next = currentTime << sequenceBits | (first + count - 1);
+            if (state.compareAndSet(prev, next)) {
+                fillBlock(dst, offset, composeId(currentTime, first), count);
+                SnowFlakeMetrics metrics = this.metrics;
+                if (metrics != null) {
+                    metrics.onIssued(count);
+                }
+                return count;
+            }
+        }
+    }
+
+    @Override
+    long lastIssuedTimestamp() {
+        return state.get() >>> sequenceBits;
+    }
+
+    @Override
+    void advanceTo(long timestamp) {
+        long next = timestamp << sequenceBits | maxSequence;
+        for (long prev; (prev = state.get()) < next; ) {
+            if (state.compareAndSet(prev, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 缓存行填充，避免多个实例（如{@link StripedSnowFlake}的各通道）的状态落在同一缓存行造成伪共享
+     */
+    @SuppressWarnings("unused")
+    static final class PaddedAtomicLong extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    public static void main(String[] args) {
+        final ConcurrentSnowFlake snowFlake = new ConcurrentSnowFlake(-1, 0, 0, 11);
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final int perThread = 200000;
+        final long[][] ids = new long[threads][perThread];
+        Thread[] workers = new Thread[threads];
+        long start = System.currentTimeMillis();
+        for (int t = 0; t < threads; t++) {
+            final long[] dst = ids[t];
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    dst[i] = snowFlake.nextId();
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        long cost = System.currentTimeMillis() - start;
+        long[] all = new long[threads * perThread];
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(ids[t], 0, all, t * perThread, perThread);
+        }
+        Arrays.sort(all);
+        int repeat = 0;
+        for (int i = 1; i < all.length; i++) {
+            if (all[i] == all[i - 1]) {
+                repeat++;
+            }
+        }
+        System.out.println(threads + "个线程生成" + all.length + "个ID，重复" + repeat + "个，耗时：" + cost + "ms");
+    }
+}
@@ -0,0 +1,107 @@
+package net.ewant;
+
+/**
+ * 带密钥的双射置换（保格式加密），定义域为 [0, 2^bits)
+ *
+ * 对偶数位宽做平衡Feistel网络，位宽为奇数时在多1位的域上做，再用循环游走（cycle walking）
+ * 把结果拉回 [0, 2^bits)，期望不超过2次。
+ * 同一个密钥下，不同的输入一定得到不同的输出，且不知道密钥时输出不可推测，可由inverse()还原。
+ * 实例不可变，可多线程共享。
+ */
+public final class FeistelPermutation {
+
+    private static final int ROUNDS = 8;
+
+    private final long[] roundKeys = new long[ROUNDS];
+
+    private final int bits;
+
+    private final int halfBits;
+
+    private final long halfMask;
+
+    private final long domain;
+
+    /**
+     * @param key 密钥
+     * @param bits 定义域位数，1 ~ 62
+     */
+    public FeistelPermutation(long key, int bits) {
+        if (bits < 1 || bits > 62) {
+            throw new IllegalArgumentException("Invalid permutation bits: " + bits);
+        }
+        this.bits = bits;
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        this.domain = 1L << bits;
+        long seed = key ^ ((long) bits << 56);
+        for (int i = 0; i < ROUNDS; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            roundKeys[i] = mix(seed);
+        }
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    /**
+     * @param index [0, 2^bits)
+     * @return 置换后的值，[0, 2^bits)
+     */
+    public long permute(long index) {
+        checkDomain(index);
+        long value = index;
+        do {
+            value = encrypt(value);
+        } while (value >= domain);
+        return value;
+    }
+
+    /**
+     * @param value permute()的结果
+     * @return 原始index
+     */
+    public long inverse(long value) {
+        checkDomain(value);
+        long index = value;
+        do {
+            index = decrypt(index);
+        } while (index >= domain);
+        return index;
+    }
+
+    private void checkDomain(long value) {
+        if (value < 0 || value >= domain) {
+            throw new IllegalArgumentException("Value out of permutation domain [0, 2^" + bits + "): " + value);
+        }
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int i = 0; i < ROUNDS; i++) {
+            long next = left ^ (mix(right ^ roundKeys[i]) & halfMask);
+            left = right;
+            right = next;
+        }
+        return left << halfBits | right;
+    }
+
+    private long decrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int i = ROUNDS - 1; i >= 0; i--) {
+            long previous = right ^ (mix(left ^ roundKeys[i]) & halfMask);
+            right = left;
+            left = previous;
+        }
+        return left << halfBits | right;
+    }
+}
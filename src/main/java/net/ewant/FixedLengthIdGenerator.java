@@ -19,14 +19,13 @@ public class FixedLengthIdGenerator implements IdGenerator{
      */
     private static final String BASE_CHARS = "6Qab5RcG7dSe3HfT4ghW2jXk9mYn8FpE";
     /**
-     * 用于 位与 运算，映射到BASE_CHARS
+     * 按位映射到BASE_CHARS，字符对齐位数（基准字符串的对数），当2^5，32个字符时，此值为 5
      */
-    private static final int CHAR_AND = BASE_CHARS.length() - 1;
-
+    private static final AlphabetCodec CODEC = new AlphabetCodec(BASE_CHARS);
     /**
-     * 字符对齐位数（基准字符串的对数），当2^5，32个字符时，此值为 5
+     * 有序字符表（同一组字符按码点升序），编码的字典序与序列号顺序一致
      */
-    private static final int charBitAlign = (int)(Math.log(BASE_CHARS.length())/Math.log(2));
+    private static final AlphabetCodec ORDERED_CODEC = CODEC.sorted();
     /**
      * 有且只有12位是最合适的，多了不支持（溢出）; 少了，在雪花算法下可用年限太短 @see SnowFlake.main()
      */
@@ -37,16 +36,80 @@ public class FixedLengthIdGenerator implements IdGenerator{
      */
     private static final int machineBits = 11;
 
+    /**
+     * 位布局：11位机器 + 10位序列号，时间戳位数受12位Base32编码预算（60bits）限制，所有实例共享
+     */
+    public static final SnowFlakeLayout LAYOUT = SnowFlakeLayout.builder().machineBits(machineBits).sequenceBits(10).codeBudget(CODEC.base(), codeLength).build();
+
     /**
      * 雪花算法实例
      */
     private SnowFlake snowFlake;
 
-    public OrderNoGenerator(int instanceId){
+    private final AlphabetCodec codec;
+
+    public FixedLengthIdGenerator(int instanceId){
+        this(instanceId, false);
+    }
+
+    /**
+     * @param instanceId 实例ID
+     * @param concurrent 是否多线程共享使用，true时使用无锁线程安全的{@link ConcurrentSnowFlake}
+     */
+    public FixedLengthIdGenerator(int instanceId, boolean concurrent){
+        this(newSnowFlake(instanceId, concurrent));
+    }
+
+    /**
+     * @param instanceId 实例ID
+     * @param concurrent 是否多线程共享使用
+     * @param ordered 是否使用有序字符表，见{@link #FixedLengthIdGenerator(SnowFlake, boolean)}
+     */
+    public FixedLengthIdGenerator(int instanceId, boolean concurrent, boolean ordered){
+        this(newSnowFlake(instanceId, concurrent), ordered);
+    }
+
+    /**
+     * 使用租用的实例ID，多个JVM在同一台机器上启动时无需手工分配实例ID
+     * @param lease 实例ID租约，见{@link InstanceIdAllocator}
+     * @param concurrent 是否多线程共享使用
+     */
+    public FixedLengthIdGenerator(InstanceIdAllocator.InstanceLease lease, boolean concurrent){
+        this(lease.getInstanceId(), concurrent);
+    }
+
+    /**
+     * 使用外部提供的雪花算法实例，机器与序列号位数合计不应超过 machineBits + 10
+     * @param snowFlake 雪花算法实例
+     */
+    public FixedLengthIdGenerator(SnowFlake snowFlake){
+        this(snowFlake, false);
+    }
+
+    /**
+     * 有序字符表模式：字符集与编码长度不变，字符按码点升序排列，编码的字典序即序列号（时间）顺序，
+     * 作为VARCHAR主键时插入集中在B树末尾，范围查询也只涉及相邻的页。
+     * 与默认字符表的编码互不兼容，已有编码可通过{@link #recode(String, IdGenerator)}转换
+     * @param snowFlake 雪花算法实例
+     * @param ordered 是否使用有序字符表
+     */
+    public FixedLengthIdGenerator(SnowFlake snowFlake, boolean ordered){
+        if(snowFlake == null){
+            throw new IllegalArgumentException("Argument 'snowFlake' can't be null!");
+        }
+        this.snowFlake = snowFlake;
+        this.codec = ordered ? ORDERED_CODEC : CODEC;
+    }
+
+    public boolean isOrdered(){
+        return codec == ORDERED_CODEC;
+    }
+
+    private static SnowFlake newSnowFlake(int instanceId, boolean concurrent){
         if(instanceId < 0 || instanceId > ((long)Math.pow(2, machineBits) - 1)){
             throw new IllegalArgumentException("Invalid instance id!");
         }
-        this.snowFlake = new SnowFlake(-1, 0, instanceId, machineBits);
+        return concurrent ? new ConcurrentSnowFlake(LAYOUT, -1, instanceId) : new SnowFlake(LAYOUT, -1, instanceId);
     }
 
     public String nextCode(){
@@ -59,30 +122,52 @@ public class FixedLengthIdGenerator implements IdGenerator{
     }
 
     public String serialToCode(long serial){
-        StringBuffer codeSerial = new StringBuffer();
-        long tmpValue = serial;
-        for (int i = 0; i < codeLength; i++) {
-            int code = (int) (tmpValue & CHAR_AND);
-            codeSerial.append(BASE_CHARS.charAt(code));
-            tmpValue = tmpValue >> charBitAlign;
-        }
-        return codeSerial.reverse().toString();// 低位反转(如不反转，解码时需倒着解)
+        return codec.encode(serial, codeLength);
+    }
+
+    public int serialToCode(long serial, char[] dst, int offset){
+        return codec.encode(serial, dst, offset, codeLength);
+    }
+
+    public int codeLength(long serial){
+        return codeLength;
+    }
+
+    public char codeCharAt(long serial, int index){
+        return codec.charAt(serial, codeLength, index);
+    }
+
+    public long[] nextSerials(long[] dst){
+        return snowFlake.nextIds(dst);
+    }
+
+    /**
+     * 开启运行指标，@see SnowFlake.enableMetrics()
+     * @return
+     */
+    public SnowFlakeMetrics enableMetrics(){
+        return snowFlake.enableMetrics();
+    }
+
+    /**
+     * 解析序列号构成
+     * @param serial
+     * @return @see SnowFlake.parseIdComposition()
+     */
+    public long[] parseIdComposition(long serial){
+        return snowFlake.parseIdComposition(serial);
+    }
+
+    public long[] serialRange(long fromMillis, long toMillis){
+        return snowFlake.idRange(fromMillis, toMillis);
+    }
+
+    public long[] serialRange(long fromMillis, long toMillis, long instanceId){
+        return snowFlake.idRangeOfInstance(fromMillis, toMillis, instanceId);
     }
 
     public long getSerial(String code){
-        long sum = 0;
-        int baseLen = BASE_CHARS.length();
-        int codeLength = code.length();
-        int startIndex = 0;
-        for (int i = startIndex; i < codeLength; i++) {
-            long originNum = BASE_CHARS.indexOf(code.charAt(i));
-            if (originNum >= baseLen) {
-                return -1; // 字符非法
-            }
-            sum = sum << charBitAlign;
-            sum += originNum;
-        }
-        return sum;
+        return codec.decode(code, 0, code.length());
     }
 
     public static void main(String[] args) {
@@ -5,4 +5,152 @@ public interface IdGenerator {
     long nextSerial();
     long getSerial(String code);
     String serialToCode(long serial);
+
+    /**
+     * 将序列号编码写入字符数组
+     * @param serial 序列号
+     * @param dst 目标数组
+     * @param offset 起始位置
+     * @return 写入结束后的位置
+     */
+    default int serialToCode(long serial, char[] dst, int offset) {
+        String code = serialToCode(serial);
+        code.getChars(0, code.length(), dst, offset);
+        return offset + code.length();
+    }
+
+    /**
+     * @param serial 序列号
+     * @return 编码长度
+     */
+    default int codeLength(long serial) {
+        return serialToCode(serial).length();
+    }
+
+    /**
+     * 编码中的单个字符，用于{@link LazyCode}按需渲染
+     * @param serial 序列号
+     * @param index 字符位置
+     * @return
+     */
+    default char codeCharAt(long serial, int index) {
+        return serialToCode(serial).charAt(index);
+    }
+
+    /**
+     * 包装为延迟编码，需要文本时才渲染
+     * @param serial 序列号
+     * @return
+     */
+    default LazyCode toLazyCode(long serial) {
+        return new LazyCode(this, serial);
+    }
+
+    /**
+     * 生成延迟编码，只分配一个小对象，不做编码
+     * @return
+     */
+    default LazyCode nextLazyCode() {
+        return new LazyCode(this, nextSerial());
+    }
+
+    /**
+     * 时间范围对应的序列号范围，见{@link SnowFlake#idRange(long, long)}
+     * 序列号不含时间戳的生成器不支持，默认抛出UnsupportedOperationException；基于雪花算法的生成器应覆盖
+     * @param fromMillis 起始毫秒时间戳（含）
+     * @param toMillis 结束毫秒时间戳（不含）
+     * @return 最小序列号与最大序列号（均含）
+     */
+    default long[] serialRange(long fromMillis, long toMillis) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support serial ranges by time");
+    }
+
+    /**
+     * 时间范围对应的序列号范围，限定实例
+     * @param fromMillis 起始毫秒时间戳（含）
+     * @param toMillis 结束毫秒时间戳（不含）
+     * @param instanceId 实例ID
+     * @return 最小序列号与最大序列号（均含）
+     */
+    default long[] serialRange(long fromMillis, long toMillis, long instanceId) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support serial ranges by time");
+    }
+
+    /**
+     * 时间范围对应的编码范围
+     * 注意：只有编码的字典序与序列号顺序一致（定长且字符表有序）时，才能直接用于编码列的范围查询
+     * @return 最小编码与最大编码
+     */
+    default String[] codeRange(long fromMillis, long toMillis) {
+        long[] range = serialRange(fromMillis, toMillis);
+        return new String[]{serialToCode(range[0]), serialToCode(Math.max(0, range[1]))};
+    }
+
+    default String[] codeRange(long fromMillis, long toMillis, long instanceId) {
+        long[] range = serialRange(fromMillis, toMillis, instanceId);
+        return new String[]{serialToCode(range[0]), serialToCode(Math.max(0, range[1]))};
+    }
+
+    /**
+     * 将其他编码格式（如默认字符表与有序字符表之间）的编码转换为本生成器的编码，序列号不变
+     * @param code 源编码
+     * @param source 源编码的生成器
+     * @return
+     */
+    default String recode(String code, IdGenerator source) {
+        long serial = source.getSerial(code);
+        if (serial == -1) {
+            throw new IllegalArgumentException("Invalid code: " + code);
+        }
+        return serialToCode(serial);
+    }
+
+    /**
+     * 批量生成序列号，填满整个数组
+     * @param dst 目标数组
+     * @return dst
+     */
+    default long[] nextSerials(long[] dst) {
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = nextSerial();
+        }
+        return dst;
+    }
+
+    /**
+     * 批量生成编码，填满整个数组
+     * @param dst 目标数组
+     * @return dst
+     */
+    default String[] nextCodes(String[] dst) {
+        long[] serials = nextSerials(new long[dst.length]);
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = serialToCode(serials[i]);
+        }
+        return dst;
+    }
+
+    /**
+     * 批量生成编码，依次首尾相连写入字符数组
+     * @param dst 目标数组
+     * @param offset 起始位置
+     * @param count 生成个数
+     * @return 写入结束后的位置
+     */
+    default int nextCodes(char[] dst, int offset, int count) {
+        long[] serials = nextSerials(new long[count]);
+        for (long serial : serials) {
+            offset = serialToCode(serial, dst, offset);
+        }
+        return offset;
+    }
+
+    /**
+     * 租用一段序列号，之后从中取号不再读取时钟
+     * @param count 租用个数
+     * @return
+     */
+    default IdRange leaseRange(int count) {
+        return new IdRange(this, nextSerials(new long[count]));
+    }
 }
@@ -0,0 +1,51 @@
+package net.ewant;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 预先租用的一段序列号
+ *
+ * 序列号在租用时一次性预留好，取号时只是移动游标，不再读取时钟，也不会与其他调用方竞争序列号。
+ * 可多线程共享。
+ */
+public class IdRange {
+
+    private final IdGenerator generator;
+
+    private final long[] serials;
+
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    IdRange(IdGenerator generator, long[] serials) {
+        this.generator = generator;
+        this.serials = serials;
+    }
+
+    public long nextSerial() {
+        int index = cursor.getAndIncrement();
+        if (index >= serials.length) {
+            throw new NoSuchElementException("IdRange exhausted, size: " + serials.length);
+        }
+        return serials[index];
+    }
+
+    public String nextCode() {
+        if (generator == null) {
+            throw new IllegalStateException("IdRange leased from SnowFlake has no code format.");
+        }
+        return generator.serialToCode(nextSerial());
+    }
+
+    public boolean hasNext() {
+        return cursor.get() < serials.length;
+    }
+
+    public int remaining() {
+        return Math.max(0, serials.length - cursor.get());
+    }
+
+    public int size() {
+        return serials.length;
+    }
+}
@@ -0,0 +1,212 @@
+package net.ewant;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本机实例ID分配器
+ *
+ * 同一台机器上的多个JVM共享一个槽位文件，每个槽位对应一个实例ID（0 ~ slotCount-1），
+ * 通过FileChannel对槽位区域加锁来租用，无需人工配置、无需外部协调服务，启动时毫秒级完成。
+ *
+ * 槽位格式（16字节）：心跳时间戳(8) + 租用者标识(8)
+ * 1、进程退出（包括崩溃）时操作系统自动释放文件锁
+ * 2、租用期间后台线程定时写心跳；正常释放时心跳清零
+ * 3、拿到锁但心跳仍在staleMillis内的槽位（上一个租用者刚崩溃，或锁不可靠的共享文件系统）暂不复用，
+ *    过期后才回收，避免新实例与刚退出的实例在时钟偏差内生成重复ID
+ *
+ * 注意：POSIX系统上文件锁（fcntl）属于进程，进程内任何一个指向该槽位文件的channel关闭时，该进程在此文件上的所有锁都会被释放。
+ * 因此同一个JVM内不要为同一槽位文件创建多个分配器（或用其他方式打开再关闭该文件），应共享同一个分配器实例。
+ */
+public class InstanceIdAllocator implements Closeable {
+
+    private static final int SLOT_SIZE = 16;
+
+    private final FileChannel channel;
+
+    private final int slotCount;
+
+    private final long heartbeatMillis;
+
+    private final long staleMillis;
+
+    private final ScheduledExecutorService heartbeat;
+
+    public InstanceIdAllocator(Path slotFile) throws IOException {
+        this(slotFile, 2048, 5000, 30000);
+    }
+
+    /**
+     * @param slotFile 槽位文件，同一台机器上的实例共用
+     * @param slotCount 槽位数（2的指数），对应实例ID位数，如2048对应11位
+     * @param heartbeatMillis 心跳间隔
+     * @param staleMillis 心跳超过该时长未更新的槽位视为过期，可回收
+     * @throws IOException
+     */
+    public InstanceIdAllocator(Path slotFile, int slotCount, long heartbeatMillis, long staleMillis) throws IOException {
+        if (slotCount < 1 || Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("Slot count must be a power of 2: " + slotCount);
+        }
+        if (heartbeatMillis <= 0 || staleMillis <= heartbeatMillis) {
+            throw new IllegalArgumentException("Invalid heartbeat[" + heartbeatMillis + "] and stale[" + staleMillis + "] millis.");
+        }
+        this.slotCount = slotCount;
+        this.heartbeatMillis = heartbeatMillis;
+        this.staleMillis = staleMillis;
+        this.channel = FileChannel.open(slotFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "instance-id-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 租用一个空闲的实例ID
+     * @return 租约，关闭时释放实例ID
+     * @throws IOException 没有空闲实例ID或读写槽位文件失败
+     */
+    public InstanceLease lease() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE);
+        for (int slot = 0; slot < slotCount; slot++) {
+            FileLock lock;
+            try {
+                lock = channel.tryLock((long) slot * SLOT_SIZE, SLOT_SIZE, false);
+            } catch (OverlappingFileLockException e) {
+                continue;// 本JVM内已租用
+            }
+            if (lock == null) {
+                continue;// 其他进程已租用
+            }
+            try {
+                buffer.clear();
+                channel.read(buffer, (long) slot * SLOT_SIZE);
+                long lastHeartbeat = buffer.position() == SLOT_SIZE ? buffer.getLong(0) : 0L;
+                long now = System.currentTimeMillis();
+                if (lastHeartbeat != 0L && now - lastHeartbeat < staleMillis) {
+                    lock.release();// 上一个租用者刚退出，等心跳过期后再回收
+                    continue;
+                }
+                InstanceLease lease = new InstanceLease(slot, Integer.numberOfTrailingZeros(slotCount), ThreadLocalRandom.current().nextLong() | 1L, lock);
+                lease.writeHeartbeat(now);
+                channel.force(false);
+                lease.heartbeatTask = heartbeat.scheduleWithFixedDelay(lease::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+                return lease;
+            } catch (Throwable e) {
+                // 加锁后初始化失败，释放槽位锁，否则该槽位直到进程退出都无法再租用
+                releaseQuietly(lock, e);
+                throw e;
+            }
+        }
+        throw new IOException("No free instance id in " + slotCount + " slots.");
+    }
+
+    /**
+     * 释放槽位锁；通道由分配器共用（关闭会释放本进程在该文件上的所有锁），只在close()时关闭
+     */
+    private static void releaseQuietly(FileLock lock, Throwable cause) {
+        try {
+            lock.release();
+        } catch (IOException | RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        heartbeat.shutdownNow();
+        channel.close();
+    }
+
+    /**
+     * 实例ID租约
+     */
+    public class InstanceLease implements Closeable {
+
+        private final int instanceId;
+
+        private final int instanceBits;
+
+        private final long owner;
+
+        private final FileLock lock;
+
+        private volatile boolean valid = true;
+
+        /**
+         * 由租用线程写入，close()可能在其他线程读取
+         */
+        private volatile ScheduledFuture<?> heartbeatTask;
+
+        private InstanceLease(int instanceId, int instanceBits, long owner, FileLock lock) {
+            this.instanceId = instanceId;
+            this.instanceBits = instanceBits;
+            this.owner = owner;
+            this.lock = lock;
+        }
+
+        public int getInstanceId() {
+            return instanceId;
+        }
+
+        /**
+         * @return 实例ID位数
+         */
+        public int getInstanceBits() {
+            return instanceBits;
+        }
+
+        /**
+         * @return 租约是否仍有效，槽位被其他实例回收（如长时间停顿未写心跳）时为false，此时应停止生成ID
+         */
+        public boolean isValid() {
+            return valid;
+        }
+
+        private void writeHeartbeat(long timestamp) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE);
+            buffer.putLong(timestamp).putLong(owner).flip();
+            channel.write(buffer, (long) instanceId * SLOT_SIZE);
+        }
+
+        private void heartbeat() {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE);
+                channel.read(buffer, (long) instanceId * SLOT_SIZE);
+                if (buffer.getLong(8) != owner) {
+                    valid = false;
+                    heartbeatTask.cancel(false);
+                    return;
+                }
+                writeHeartbeat(System.currentTimeMillis());
+            } catch (IOException e) {
+                // 写心跳失败不影响租约，下次重试；持续失败时槽位会过期
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (heartbeatTask != null) {
+                heartbeatTask.cancel(false);
+            }
+            if (valid && lock.isValid()) {
+                valid = false;
+                ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE);
+                buffer.putLong(0L).putLong(0L).flip();
+                channel.write(buffer, (long) instanceId * SLOT_SIZE);
+                lock.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package net.ewant;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 已发放兑换码索引（按活动）
+ *
+ * verify()只能校验兑换码的校验位，无法判断兑换码是否真的发放过，而能通过3位校验的猜测码仍有约1/7。
+ * 本索引把某个活动已发放的序列排序后存入文件，通过内存映射只读访问，查询时：
+ * 1、校验位、活动ID不对的直接拒绝
+ * 2、内存中的布隆过滤器拒绝绝大多数未发放的序列
+ * 3、剩下的在映射文件上做插值查找（数据位随机均匀分布，插值查找平均 O(log log n)）
+ * 整个过程无需访问数据库。
+ *
+ * 文件格式（大端）：magic(4) + actId(4) + codeLen(4) + 保留(4) + count(8) + 升序序列(count * 8)
+ */
+public class IssuedCodeIndex implements Closeable {
+
+    private static final int MAGIC = 0x56534958;// "VSIX"
+
+    private static final int HEADER_SIZE = 24;
+
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    private final FileChannel channel;
+
+    private final LongBuffer serials;
+
+    private final int count;
+
+    private final int actId;
+
+    private final int codeLen;
+
+    private final LongBloomFilter bloomFilter;
+
+    private IssuedCodeIndex(FileChannel channel, int actId, int codeLen, int count, LongBuffer serials) {
+        this.channel = channel;
+        this.actId = actId;
+        this.codeLen = codeLen;
+        this.count = count;
+        this.serials = serials;
+        this.bloomFilter = new LongBloomFilter(count, BLOOM_FALSE_POSITIVE_RATE);
+        for (int i = 0; i < count; i++) {
+            bloomFilter.add(serials.get(i));
+        }
+    }
+
+    /**
+     * 构建索引文件
+     * @param file 索引文件
+     * @param actId 活动ID
+     * @param codeLen 单个兑换码长度（与生成时传入的一致）
+     * @param issuedSerials 已发放的序列，会被原地排序
+     * @throws IOException
+     */
+    public static void build(Path file, int actId, int codeLen, long[] issuedSerials) throws IOException {
+        Arrays.sort(issuedSerials);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = HEADER_SIZE + (long) issuedSerials.length * 8;
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many serials for one index file: " + issuedSerials.length);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(actId).putInt(codeLen).putInt(0).putLong(issuedSerials.length);
+            buffer.asLongBuffer().put(issuedSerials);
+            buffer.force();
+        }
+    }
+
+    public static void build(Path file, int actId, int codeLen, LongHashSet issuedSerials) throws IOException {
+        build(file, actId, codeLen, issuedSerials.toArray());
+    }
+
+    /**
+     * 由{@link CodeExporter.Format#BINARY}格式导出的文件构建索引
+     */
+    public static void buildFromExport(Path file, int actId, int codeLen, Path binaryExport) throws IOException {
+        long[] issuedSerials;
+        try (FileChannel channel = FileChannel.open(binaryExport, StandardOpenOption.READ)) {
+            if (channel.size() / 8 > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many serials for one index file: " + channel.size() / 8);
+            }
+            issuedSerials = new long[(int) (channel.size() / 8)];
+            channel.map(FileChannel.MapMode.READ_ONLY, 0, issuedSerials.length * 8L).asLongBuffer().get(issuedSerials);
+        }
+        build(file, actId, codeLen, issuedSerials);
+    }
+
+    public static IssuedCodeIndex open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("Invalid issued code index file: " + file);
+            }
+            int actId = buffer.getInt();
+            int codeLen = buffer.getInt();
+            buffer.getInt();
+            long count = buffer.getLong();
+            if (HEADER_SIZE + count * 8 != channel.size()) {
+                throw new IOException("Corrupted issued code index file: " + file);
+            }
+            ByteBuffer body = buffer.slice();
+            return new IssuedCodeIndex(channel, actId, codeLen, (int) count, body.asLongBuffer());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 兑换码是否已发放
+     * @param code 兑换码
+     * @return
+     */
+    public boolean verifyIssued(String code) {
+        return verifyIssued(code, null);
+    }
+
+    /**
+     * 带密钥校验位的兑换码是否已发放
+     * @param code 兑换码
+     * @param mac 生成时使用的带密钥校验位，null表示默认校验位
+     * @return
+     */
+    public boolean verifyIssued(String code, SerialMac mac) {
+        boolean hasId = actId > 0;
+        int codeLength = VerifiableSerial.fitCodeLength(actId, codeLen, VerifiableSerial.checkBits(mac)) + (hasId ? 1 : 0);
+        if (code == null || code.length() != codeLength || VerifiableSerial.verifiedActId(code, hasId, mac) != (hasId ? actId : 0)) {
+            return false;
+        }
+        return containsSerial(VerifiableSerial.getSerial(code, hasId));
+    }
+
+    /**
+     * 序列是否已发放
+     * @param serial 序列，@see VerifiableSerial.getSerial()
+     * @return
+     */
+    public boolean containsSerial(long serial) {
+        return bloomFilter.mightContain(serial) && indexOf(serial) >= 0;
+    }
+
+    /**
+     * 插值查找，连续几次插值收敛不佳时退化为二分查找，保证最坏 O(log n)
+     */
+    private int indexOf(long serial) {
+        int low = 0;
+        int high = count - 1;
+        int round = 0;
+        while (low <= high) {
+            long lowValue = serials.get(low);
+            long highValue = serials.get(high);
+            if (serial < lowValue || serial > highValue) {
+                return -1;
+            }
+            int mid;
+            if (highValue == lowValue || ++round > 8) {
+                mid = (low + high) >>> 1;
+            } else {
+                mid = low + (int) ((double) (serial - lowValue) / (highValue - lowValue) * (high - low));
+            }
+            long midValue = serials.get(mid);
+            if (midValue < serial) {
+                low = mid + 1;
+            } else if (midValue > serial) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public int getActId() {
+        return actId;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
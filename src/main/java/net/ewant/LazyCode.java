@@ -0,0 +1,87 @@
+package net.ewant;
+
+/**
+ * 延迟编码
+ *
+ * 只持有序列号与其编码格式（生成器），热路径上按序列号传递与比较，不做编码；
+ * 需要文本时（如输出到接口响应）charAt按需计算单个字符，toString才完整渲染一次并缓存。
+ * equals/hashCode基于序列号与编码格式，可直接作为HashMap的key。
+ * 缓存的长度与文本都是幂等写入，无需同步即可多线程共享。
+ */
+public final class LazyCode implements CharSequence {
+
+    private final IdGenerator format;
+
+    private final long serial;
+
+    private String text;
+
+    private int length;
+
+    LazyCode(IdGenerator format, long serial) {
+        this.format = format;
+        this.serial = serial;
+    }
+
+    public long getSerial() {
+        return serial;
+    }
+
+    public IdGenerator getFormat() {
+        return format;
+    }
+
+    @Override
+    public int length() {
+        int len = length;
+        if (len == 0) {
+            length = len = text != null ? text.length() : format.codeLength(serial);
+        }
+        return len;
+    }
+
+    @Override
+    public char charAt(int index) {
+        String str = text;
+        if (str != null) {
+            return str.charAt(index);
+        }
+        if (index < 0 || index >= length()) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+        return format.codeCharAt(serial, index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String str = text;
+        if (str == null) {
+            char[] buf = new char[length()];
+            format.serialToCode(serial, buf, 0);
+            text = str = new String(buf);
+        }
+        return str;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LazyCode)) {
+            return false;
+        }
+        LazyCode other = (LazyCode) o;
+        return serial == other.serial && format == other.format;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(serial);
+    }
+}
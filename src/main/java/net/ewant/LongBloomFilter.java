@@ -0,0 +1,67 @@
+package net.ewant;
+
+/**
+ * long值的布隆过滤器
+ *
+ * 不存在的值绝大多数在这里就被拒绝，只有可能存在的值才需要进一步精确查找。
+ * 使用一次64位混合哈希派生k个位置（双重哈希），不产生任何对象。非线程安全（只读查询可并发）。
+ */
+public class LongBloomFilter {
+
+    private final long[] bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    /**
+     * @param expectedSize 预计元素个数
+     * @param falsePositiveRate 期望误判率，如 0.01
+     */
+    public LongBloomFilter(long expectedSize, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid false positive rate: " + falsePositiveRate);
+        }
+        long n = Math.max(1, expectedSize);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, (m + 63) / 64 * 64);
+        if (m / 64 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Expected size too large: " + expectedSize);
+        }
+        this.bits = new long[(int) (m / 64)];
+        this.bitCount = m;
+        this.hashCount = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+    public void add(long value) {
+        long hash = mix(value);
+        long h1 = hash >>> 32;
+        long h2 = hash & 0xFFFFFFFFL | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    /**
+     * @return false表示一定不存在，true表示可能存在
+     */
+    public boolean mightContain(long value) {
+        long hash = mix(value);
+        long h1 = hash >>> 32;
+        long h2 = hash & 0xFFFFFFFFL | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
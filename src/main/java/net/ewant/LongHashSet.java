@@ -0,0 +1,176 @@
+package net.ewant;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.function.LongConsumer;
+
+/**
+ * 基于开放寻址（线性探测）的long集合
+ *
+ * 每个元素只占用 8 / 负载因子 个字节，没有装箱的Long与HashMap.Node开销，
+ * 适合千万级序列号的去重。可选择将哈希表放在堆外（direct buffer），不占用堆空间、不影响GC。
+ *
+ * 0 作为空槽标记，元素0单独记录。非线程安全。
+ */
+public class LongHashSet {
+
+    /**
+     * 堆外单个buffer最多 2^27 个槽位（1GB）
+     */
+    private static final int MAX_OFF_HEAP_CAPACITY = 1 << 27;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final boolean offHeap;
+
+    private LongBuffer table;
+
+    private int mask;
+
+    private int size;
+
+    private int resizeThreshold;
+
+    private boolean hasZero;
+
+    public LongHashSet(int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    /**
+     * @param expectedSize 预计元素个数，避免扩容带来性能消耗
+     * @param offHeap 是否将哈希表放在堆外
+     */
+    public LongHashSet(int expectedSize, boolean offHeap) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Invalid expected size: " + expectedSize);
+        }
+        this.offHeap = offHeap;
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @return 集合最多可容纳的元素个数
+     */
+    static int maxSize(boolean offHeap) {
+        return (offHeap ? MAX_OFF_HEAP_CAPACITY : MAX_CAPACITY) / 4 * 3;
+    }
+
+    private int capacityFor(int expectedSize) {
+        long capacity = Long.highestOneBit(Math.max(16L, (long) expectedSize * 4 / 3 + 1) - 1) << 1;
+        if (capacity > (offHeap ? MAX_OFF_HEAP_CAPACITY : MAX_CAPACITY)) {
+            throw new IllegalArgumentException("Expected size too large: " + expectedSize);
+        }
+        return (int) capacity;
+    }
+
+    private void allocate(int capacity) {
+        table = offHeap
+                ? ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer()
+                : LongBuffer.wrap(new long[capacity]);
+        mask = capacity - 1;
+        resizeThreshold = capacity / 4 * 3;
+    }
+
+    private static int hash(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @return 是否新增（集合中原本不存在）
+     */
+    public boolean add(long value) {
+        if (value == 0L) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int index = hash(value) & mask;
+        for (long current; (current = table.get(index)) != 0L; index = (index + 1) & mask) {
+            if (current == value) {
+                return false;
+            }
+        }
+        table.put(index, value);
+        if (++size > resizeThreshold) {
+            resize();
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == 0L) {
+            return hasZero;
+        }
+        int index = hash(value) & mask;
+        for (long current; (current = table.get(index)) != 0L; index = (index + 1) & mask) {
+            if (current == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void resize() {
+        LongBuffer old = table;
+        int oldCapacity = mask + 1;
+        if (oldCapacity >= (offHeap ? MAX_OFF_HEAP_CAPACITY : MAX_CAPACITY)) {
+            throw new IllegalStateException("LongHashSet is full, size: " + size);
+        }
+        allocate(oldCapacity << 1);
+        for (int i = 0; i < oldCapacity; i++) {
+            long value = old.get(i);
+            if (value != 0L) {
+                int index = hash(value) & mask;
+                while (table.get(index) != 0L) {
+                    index = (index + 1) & mask;
+                }
+                table.put(index, value);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public void forEach(LongConsumer action) {
+        if (hasZero) {
+            action.accept(0L);
+        }
+        for (int i = 0; i <= mask; i++) {
+            long value = table.get(i);
+            if (value != 0L) {
+                action.accept(value);
+            }
+        }
+    }
+
+    public long[] toArray() {
+        long[] array = new long[size];
+        int i = 0;
+        if (hasZero) {
+            array[i++] = 0L;
+        }
+        for (int j = 0; j <= mask; j++) {
+            long value = table.get(j);
+            if (value != 0L) {
+                array[i++] = value;
+            }
+        }
+        return array;
+    }
+}
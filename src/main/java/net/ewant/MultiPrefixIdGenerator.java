@@ -0,0 +1,126 @@
+package net.ewant;
+
+import java.util.stream.IntStream;
+
+/**
+ * 多前缀ID生成器
+ *
+ * 多个前缀（如 T 交易、O 订单、R 退款）共用同一个线程安全的雪花算法实例，同一台机器只有一个时钟与序列号计数器，
+ * 不同前缀的序列号也不会重复。每个前缀的字符表在构建时预先计算好，生成的编码与同一前缀的{@link PrefixIdGenerator}完全一致。
+ *
+ * 解码时按编码首字符（负数为第二个字符）查表定位前缀，混合在一起的编码无需事先知道类型即可解码。
+ */
+public class MultiPrefixIdGenerator {
+
+    /**
+     * 前缀字符 -> 对应前缀的生成器，未注册的前缀为null
+     */
+    private final PrefixIdGenerator[] generators = new PrefixIdGenerator[128];
+
+    private final SnowFlake snowFlake;
+
+    private final char[] prefixes;
+
+    /**
+     * @param instanceId 实例ID
+     * @param prefixes 前缀字符
+     */
+    public MultiPrefixIdGenerator(int instanceId, char... prefixes) {
+        this(PrefixIdGenerator.newSnowFlake(instanceId, true), prefixes);
+    }
+
+    /**
+     * @param snowFlake 共用的雪花算法实例，多线程使用时必须是线程安全的
+     * @param prefixes 前缀字符
+     */
+    public MultiPrefixIdGenerator(SnowFlake snowFlake, char... prefixes) {
+        if (snowFlake == null) {
+            throw new IllegalArgumentException("Argument 'snowFlake' can't be null!");
+        }
+        if (prefixes == null || prefixes.length == 0) {
+            throw new IllegalArgumentException("At least one prefix is required.");
+        }
+        for (char prefix : prefixes) {
+            if (prefix >= 128 || prefix == '-') {
+                throw new IllegalArgumentException("Prefix must be an ASCII char other than '-': " + prefix);
+            }
+            if (generators[prefix] != null) {
+                throw new IllegalArgumentException("Duplicate prefix: " + prefix);
+            }
+            generators[prefix] = new PrefixIdGenerator(snowFlake, prefix);
+        }
+        this.snowFlake = snowFlake;
+        this.prefixes = prefixes.clone();
+    }
+
+    /**
+     * 获取指定前缀的生成器视图，与其他前缀共用序列号
+     * @param prefix 前缀字符
+     * @return
+     */
+    public PrefixIdGenerator forPrefix(char prefix) {
+        PrefixIdGenerator generator = prefix < 128 ? generators[prefix] : null;
+        if (generator == null) {
+            throw new IllegalArgumentException("Unknown prefix: " + prefix);
+        }
+        return generator;
+    }
+
+    public String nextCode(char prefix) {
+        return forPrefix(prefix).serialToCode(snowFlake.nextId());
+    }
+
+    public long nextSerial() {
+        return snowFlake.nextId();
+    }
+
+    public String serialToCode(long serial, char prefix) {
+        return forPrefix(prefix).serialToCode(serial);
+    }
+
+    /**
+     * 按编码的前缀字符分派解码
+     * @param code 任意已注册前缀的编码
+     * @return 序列号，前缀未注册或包含非法字符时返回-1
+     */
+    public long getSerial(String code) {
+        PrefixIdGenerator generator = dispatch(code);
+        return generator == null ? -1 : generator.getSerial(code);
+    }
+
+    /**
+     * @param code 编码
+     * @return 编码的前缀字符，前缀未注册时返回0
+     */
+    public char prefixOf(String code) {
+        PrefixIdGenerator generator = dispatch(code);
+        return generator == null ? 0 : generator.getPrefix();
+    }
+
+    private PrefixIdGenerator dispatch(String code) {
+        if (code == null || code.length() < 2) {
+            return null;
+        }
+        char first = code.charAt(0);
+        if (first == '-') {
+            first = code.charAt(1);
+        }
+        return first < 128 ? generators[first] : null;
+    }
+
+    public char[] getPrefixes() {
+        return prefixes.clone();
+    }
+
+    public SnowFlake getSnowFlake() {
+        return snowFlake;
+    }
+
+    public static void main(String[] args) {
+        MultiPrefixIdGenerator generator = new MultiPrefixIdGenerator(0, 'T', 'O', 'R');
+        IntStream.range(0, 9).forEach(i->{
+            String code = generator.nextCode(generator.prefixes[i % 3]);
+            System.out.println(code + "->" + generator.prefixOf(code) + ":" + generator.getSerial(code));
+        });
+    }
+}
@@ -27,9 +27,14 @@ public class PrefixIdGenerator implements IdGenerator{
      */
     private static final int machineBits = 11;
 
+    /**
+     * 位布局：11位机器 + 10位序列号，时间戳位数按前缀后11位编码的预算计算，所有实例共享
+     */
+    public static final SnowFlakeLayout LAYOUT = SnowFlakeLayout.builder().machineBits(machineBits).sequenceBits(10).codeBudget(USING_CHARS_LENGTH, codeLength).build();
+
     private char prefix;
 
-    private byte[] charsTable;
+    private AlphabetCodec codec;
 
     /**
      * 雪花算法实例
@@ -37,13 +42,71 @@ public class PrefixIdGenerator implements IdGenerator{
     private SnowFlake snowFlake;
 
     public PrefixIdGenerator(int instanceId, char prefix){
-        if(instanceId < 0 || instanceId > ((long)Math.pow(2, machineBits) - 1)){
-            throw new IllegalArgumentException("Invalid instance id!");
+        this(instanceId, prefix, false);
+    }
+
+    /**
+     * @param instanceId 实例ID
+     * @param prefix 前缀字符
+     * @param concurrent 是否多线程共享使用，true时使用无锁线程安全的{@link ConcurrentSnowFlake}
+     */
+    public PrefixIdGenerator(int instanceId, char prefix, boolean concurrent){
+        this(newSnowFlake(instanceId, concurrent), prefix);
+    }
+
+    /**
+     * @param instanceId 实例ID
+     * @param prefix 前缀字符
+     * @param concurrent 是否多线程共享使用
+     * @param ordered 是否使用有序字符表，见{@link #PrefixIdGenerator(SnowFlake, char, boolean)}
+     */
+    public PrefixIdGenerator(int instanceId, char prefix, boolean concurrent, boolean ordered){
+        this(newSnowFlake(instanceId, concurrent), prefix, ordered);
+    }
+
+    /**
+     * 使用租用的实例ID，多个JVM在同一台机器上启动时无需手工分配实例ID
+     * @param lease 实例ID租约，见{@link InstanceIdAllocator}
+     * @param prefix 前缀字符
+     * @param concurrent 是否多线程共享使用
+     */
+    public PrefixIdGenerator(InstanceIdAllocator.InstanceLease lease, char prefix, boolean concurrent){
+        this(lease.getInstanceId(), prefix, concurrent);
+    }
+
+    /**
+     * 使用外部提供的雪花算法实例，机器与序列号位数合计不应超过 machineBits + 10
+     * @param snowFlake 雪花算法实例
+     * @param prefix 前缀字符
+     */
+    public PrefixIdGenerator(SnowFlake snowFlake, char prefix){
+        this(snowFlake, prefix, false);
+    }
+
+    /**
+     * 有序字符表模式：字符集不变，字符按码点升序排列，同一前缀、同一长度的编码字典序即序列号（时间）顺序。
+     * 默认布局下非负序列号在可用年限内恒为前缀 + 11位，作为VARCHAR主键时插入集中在B树末尾。
+     * 与默认字符表的编码互不兼容，已有编码可通过{@link #recode(String, IdGenerator)}转换
+     * @param snowFlake 雪花算法实例
+     * @param prefix 前缀字符
+     * @param ordered 是否使用有序字符表
+     */
+    public PrefixIdGenerator(SnowFlake snowFlake, char prefix, boolean ordered){
+        if(snowFlake == null){
+            throw new IllegalArgumentException("Argument 'snowFlake' can't be null!");
         }
         this.prefix = prefix;
-        this.snowFlake = new SnowFlake(-1, 0, instanceId, machineBits);
+        this.snowFlake = snowFlake;
         String replace = BASE_CHARS.replace(String.valueOf(prefix), "");
-        charsTable = replace.substring(0, USING_CHARS_LENGTH).getBytes();
+        AlphabetCodec codec = new AlphabetCodec(replace.substring(0, USING_CHARS_LENGTH));
+        this.codec = ordered ? codec.sorted() : codec;
+    }
+
+    static SnowFlake newSnowFlake(int instanceId, boolean concurrent){
+        if(instanceId < 0 || instanceId > ((long)Math.pow(2, machineBits) - 1)){
+            throw new IllegalArgumentException("Invalid instance id!");
+        }
+        return concurrent ? new ConcurrentSnowFlake(LAYOUT, -1, instanceId) : new SnowFlake(LAYOUT, -1, instanceId);
     }
 
     public String nextCode(){
@@ -53,6 +116,43 @@ public class PrefixIdGenerator implements IdGenerator{
         return snowFlake.nextId();
     }
 
+    public long[] nextSerials(long[] dst){
+        return snowFlake.nextIds(dst);
+    }
+
+    /**
+     * 开启运行指标，@see SnowFlake.enableMetrics()
+     * @return
+     */
+    public SnowFlakeMetrics enableMetrics(){
+        return snowFlake.enableMetrics();
+    }
+
+    /**
+     * 解析序列号构成
+     * @param serial
+     * @return @see SnowFlake.parseIdComposition()
+     */
+    public long[] parseIdComposition(long serial){
+        return snowFlake.parseIdComposition(serial);
+    }
+
+    public boolean isOrdered(){
+        return codec.isSorted();
+    }
+
+    public char getPrefix(){
+        return prefix;
+    }
+
+    public long[] serialRange(long fromMillis, long toMillis){
+        return snowFlake.idRange(fromMillis, toMillis);
+    }
+
+    public long[] serialRange(long fromMillis, long toMillis, long instanceId){
+        return snowFlake.idRangeOfInstance(fromMillis, toMillis, instanceId);
+    }
+
     public long getSerial(String code){
         return decode(code);
     }
@@ -61,50 +161,56 @@ public class PrefixIdGenerator implements IdGenerator{
         return encode(serial);
     }
 
-    private long decode(String code) {
-        long ret = 0;
-        long count = 1;
-        long sign = 1;
-        if (code.charAt(0) == '-') {
-            sign = -1;
-            code = code.substring(1);
-        }
-        code = code.substring(1);// ignore prefix
-        for (int i = code.length() - 1; i > -1; i--) {
-            char ch = code.charAt(i);
-            ret += indexOf(ch) * count;
-            count *= USING_CHARS_LENGTH;
+    public int serialToCode(long serial, char[] dst, int offset){
+        if (serial < 0) {
+            String code = encode(serial);
+            code.getChars(0, code.length(), dst, offset);
+            return offset + code.length();
         }
-        return sign * ret;
+        int width = codec.length(serial, codeLength);
+        dst[offset] = prefix;
+        return codec.encode(serial, dst, offset + 1, width);
     }
 
-    private String encode(long serial) {
-        StringBuffer buff = new StringBuffer();
-        char ch = 0;
+    public int codeLength(long serial){
+        return serial < 0 ? 2 + codec.length(-serial, codeLength) : 1 + codec.length(serial, codeLength);
+    }
+
+    public char codeCharAt(long serial, int index){
+        int start = 1;
         if (serial < 0) {
+            if (index == 0) {
+                return '-';
+            }
             serial = -1 * serial;
-            ch = '-';
-        }
-        int index=0;
-        while (serial > 0 || index < codeLength) {
-            buff.append((char)charsTable[(int) (serial % USING_CHARS_LENGTH)]);
-            serial /= USING_CHARS_LENGTH;
-            index++;
+            start = 2;
         }
-        buff.append(prefix);
-        if (ch > 0) {
-            buff.append('-');
+        if (index == start - 1) {
+            return prefix;
         }
-        return buff.reverse().toString();
+        return codec.charAt(serial, codec.length(serial, codeLength), index - start);
     }
 
-    private int indexOf(char ch){
-        for(int i=0; i<charsTable.length;i++){
-            if(ch == charsTable[i]){
-                return i;
-            }
+    private long decode(String code) {
+        int start = code.charAt(0) == '-' ? 2 : 1;// ignore prefix
+        long ret = codec.decode(code, start, code.length() - start);
+        return start == 2 && ret > 0 ? -ret : ret;
+    }
+
+    private String encode(long serial) {
+        int start = 1;
+        if (serial < 0) {
+            serial = -1 * serial;
+            start = 2;
+        }
+        int width = codec.length(serial, codeLength);
+        char[] buf = new char[start + width];
+        if (start == 2) {
+            buf[0] = '-';
         }
-        return -1;
+        buf[start - 1] = prefix;
+        codec.encode(serial, buf, start, width);
+        return new String(buf);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,211 @@
+package net.ewant;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 兑换状态跟踪（按活动）
+ *
+ * 代替“每个兑换码一行”的兑换状态表：已兑换的兑换码在进程内用压缩位图记录，tryRedeem()无锁，
+ * 同一个兑换码并发兑换时只有一个线程返回true。位图见{@link ConcurrentRoaringBitmap}，键为：
+ * 1、数据位模式：兑换码的随机数据位，按数据位的高16位分桶。数据位随机分布，每个已兑换码约占 低位位数（数据位数 - 16，按16/32/64位存放）
+ *    加上容器对象头的分摊，已兑换码越多分摊越少；如codeLen为12时数据位约50位，10万个约18字节/个，百万个以上约9字节/个；
+ *    另有预先分配的桶数组（2^16个引用，约256KB）
+ * 2、置换模式：由{@link VerifiableSerial#permutation}反查出的活动内计数器index，按index的低16位分容器，
+ *    index连续时每个容器很快转为8KB位图，每个兑换码约占1位
+ *
+ * 可通过snapshot()把当前状态写入内存映射文件（先写临时文件再原子替换），重启后由restore()加载。
+ *
+ * 文件格式（大端）：magic(4) + actId(4) + codeLen(4) + 模式(4) + 位图
+ */
+public class RedemptionTracker {
+
+    private static final int MAGIC = 0x56535244;// "VSRD"
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int DATA_BITS_MODE = 0;
+
+    private static final int INDEX_MODE = 1;
+
+    private final int actId;
+
+    private final int codeLen;
+
+    private final SerialMac mac;
+
+    private final FeistelPermutation permutation;
+
+    private final int codeLength;
+
+    private final int checkBits;
+
+    private final long dataMask;
+
+    private final ConcurrentRoaringBitmap redeemed;
+
+    /**
+     * 数据位模式，适用于create()、generateSerials()等随机生成的兑换码
+     * @param actId 活动ID
+     * @param codeLen 单个兑换码长度（与生成时传入的一致）
+     * @param mac 生成时使用的带密钥校验位，null表示默认校验位
+     */
+    public RedemptionTracker(int actId, int codeLen, SerialMac mac) {
+        this(actId, codeLen, mac, null, null);
+    }
+
+    /**
+     * 置换模式，适用于createAt()、serialAt()等按计数器生成的兑换码
+     * @param actId 活动ID
+     * @param codeLen 单个兑换码长度（与生成时传入的一致）
+     * @param permutation 生成时使用的置换器，@see VerifiableSerial.permutation()
+     */
+    public RedemptionTracker(int actId, int codeLen, FeistelPermutation permutation) {
+        this(actId, codeLen, null, requireNonNull(permutation), null);
+    }
+
+    private RedemptionTracker(int actId, int codeLen, SerialMac mac, FeistelPermutation permutation, ConcurrentRoaringBitmap redeemed) {
+        this.actId = actId;
+        this.codeLen = codeLen;
+        this.mac = mac;
+        this.permutation = permutation;
+        this.checkBits = VerifiableSerial.checkBits(mac);
+        this.codeLength = VerifiableSerial.fitCodeLength(actId, codeLen, checkBits);
+        int randBitLength = VerifiableSerial.randBitLength(actId, codeLength, checkBits);
+        if (permutation != null && permutation.bits() != randBitLength) {
+            throw new IllegalArgumentException("Permutation bits " + permutation.bits() + " mismatch data bits " + randBitLength);
+        }
+        this.dataMask = (1L << randBitLength) - 1;
+        if (redeemed != null && (redeemed.bits() != randBitLength || redeemed.dense() != (permutation != null))) {
+            throw new IllegalArgumentException("Bitmap bits " + redeemed.bits() + " mismatch data bits " + randBitLength);
+        }
+        this.redeemed = redeemed != null ? redeemed : new ConcurrentRoaringBitmap(randBitLength, permutation != null);
+    }
+
+    private static FeistelPermutation requireNonNull(FeistelPermutation permutation) {
+        if (permutation == null) {
+            throw new IllegalArgumentException("Permutation must not be null");
+        }
+        return permutation;
+    }
+
+    /**
+     * 兑换
+     * @param code 兑换码
+     * @return 兑换码合法且此前未兑换过返回true；非法或已兑换返回false
+     */
+    public boolean tryRedeem(String code) {
+        long key = keyOf(code);
+        return key >= 0 && redeemed.add(key);
+    }
+
+    /**
+     * @param code 兑换码
+     * @return 是否已兑换，非法兑换码返回false
+     */
+    public boolean isRedeemed(String code) {
+        long key = keyOf(code);
+        return key >= 0 && redeemed.contains(key);
+    }
+
+    /**
+     * @return 位图的键，兑换码非法或不属于本活动时返回-1
+     */
+    private long keyOf(String code) {
+        boolean hasId = actId > 0;
+        if (code == null || code.length() != codeLength + (hasId ? 1 : 0)
+                || VerifiableSerial.verifiedActId(code, hasId, mac) != (hasId ? actId : 0)) {
+            return -1;
+        }
+        long data = (VerifiableSerial.getSerial(code, hasId) >> checkBits) & dataMask;
+        return permutation == null ? data : permutation.inverse(data);
+    }
+
+    /**
+     * @return 已兑换的兑换码数量
+     */
+    public long redeemedCount() {
+        return redeemed.cardinality();
+    }
+
+    /**
+     * @return 位图占用的堆内存字节数（估算，含桶数组与各容器的对象头）
+     */
+    public long memoryBytes() {
+        return redeemed.memoryBytes();
+    }
+
+    public int getActId() {
+        return actId;
+    }
+
+    /**
+     * 将当前兑换状态写入文件，期间可继续兑换（之后兑换的不保证包含在内）
+     * @param file 快照文件
+     * @throws IOException
+     */
+    public void snapshot(Path file) throws IOException {
+        List<Object[]> snapshot = redeemed.snapshot();
+        long size = HEADER_SIZE + ConcurrentRoaringBitmap.serializedSize(snapshot);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Redemption snapshot too large: " + size);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(actId).putInt(codeLen).putInt(permutation == null ? DATA_BITS_MODE : INDEX_MODE);
+            redeemed.write(snapshot, buffer);
+            buffer.force();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 加载数据位模式的快照
+     * @param file 快照文件
+     * @param mac 生成时使用的带密钥校验位，null表示默认校验位
+     * @throws IOException
+     */
+    public static RedemptionTracker restore(Path file, SerialMac mac) throws IOException {
+        return restore(file, mac, null);
+    }
+
+    /**
+     * 加载置换模式的快照
+     * @param file 快照文件
+     * @param permutation 生成时使用的置换器
+     * @throws IOException
+     */
+    public static RedemptionTracker restore(Path file, FeistelPermutation permutation) throws IOException {
+        return restore(file, null, requireNonNull(permutation));
+    }
+
+    private static RedemptionTracker restore(Path file, SerialMac mac, FeistelPermutation permutation) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("Invalid redemption snapshot file: " + file);
+            }
+            int actId = buffer.getInt();
+            int codeLen = buffer.getInt();
+            int mode = buffer.getInt();
+            if (mode != (permutation == null ? DATA_BITS_MODE : INDEX_MODE)) {
+                throw new IOException("Redemption snapshot mode mismatch: " + file);
+            }
+            try {
+                ConcurrentRoaringBitmap redeemed = ConcurrentRoaringBitmap.read(buffer);
+                return new RedemptionTracker(actId, codeLen, mac, permutation, redeemed);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupted redemption snapshot file: " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package net.ewant;
+
+/**
+ * 兑换码的带密钥校验位（截断的SipHash-2-4）
+ *
+ * 默认的校验位只有3位（sum % 7），随便猜的兑换码约有1/7能通过verify()；
+ * 使用带密钥的校验位后，不知道密钥的情况下猜中的概率为 1/2^checkBits，校验位越长，可猜测性越小，
+ * 但随机数据位也相应减少（字符长度不变时）。
+ * 实例不可变，可多线程共享。
+ */
+public final class SerialMac {
+
+    private final long k0;
+
+    private final long k1;
+
+    private final int checkBits;
+
+    private final long checkMask;
+
+    /**
+     * @param k0 密钥低64位
+     * @param k1 密钥高64位
+     * @param checkBits 校验位长度，1 ~ 32
+     */
+    public SerialMac(long k0, long k1, int checkBits) {
+        if (checkBits < 1 || checkBits > 32) {
+            throw new IllegalArgumentException("Invalid check bits: " + checkBits);
+        }
+        this.k0 = k0;
+        this.k1 = k1;
+        this.checkBits = checkBits;
+        this.checkMask = (1L << checkBits) - 1;
+    }
+
+    /**
+     * 由主密钥派生某个活动的密钥，各活动的校验位互不相关
+     * @param k0 主密钥低64位
+     * @param k1 主密钥高64位
+     * @param actId 活动ID
+     * @param checkBits 校验位长度
+     * @return
+     */
+    public static SerialMac forCampaign(long k0, long k1, int actId, int checkBits) {
+        return new SerialMac(SipHash.hash(k0, k1, (long) actId << 1), SipHash.hash(k0, k1, (long) actId << 1 | 1), checkBits);
+    }
+
+    public int checkBits() {
+        return checkBits;
+    }
+
+    /**
+     * @param data 标识位 + 数据位
+     * @return 截断后的校验位
+     */
+    public long tag(long data) {
+        return SipHash.hash(k0, k1, data) & checkMask;
+    }
+}
@@ -0,0 +1,49 @@
+package net.ewant;
+
+/**
+ * 分片加锁的long集合，供多线程并发去重
+ *
+ * 按哈希高位分散到多个{@link LongHashSet}分片，每个分片独立加锁，分片数远大于线程数时几乎没有锁竞争。
+ */
+final class ShardedLongHashSet {
+
+    private final LongHashSet[] shards;
+
+    private final int shardShift;
+
+    /**
+     * @param expectedSize 预计元素个数
+     * @param shardBits 分片数为 2^shardBits
+     * @param offHeap 是否将哈希表放在堆外
+     */
+    ShardedLongHashSet(int expectedSize, int shardBits, boolean offHeap) {
+        shards = new LongHashSet[1 << shardBits];
+        shardShift = 64 - shardBits;
+        int shardSize = expectedSize / shards.length + 1;
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new LongHashSet(shardSize + shardSize / 8, offHeap);
+        }
+    }
+
+    private LongHashSet shardOf(long value) {
+        // 与LongHashSet内部取低位不同，这里取哈希高位，避免分片内的分布退化
+        return shardShift == 64 ? shards[0] : shards[(int) ((value * 0xC2B2AE3D27D4EB4FL) >>> shardShift)];
+    }
+
+    /**
+     * @return 是否新增（集合中原本不存在）
+     */
+    boolean add(long value) {
+        LongHashSet shard = shardOf(value);
+        synchronized (shard) {
+            return shard.add(value);
+        }
+    }
+
+    boolean contains(long value) {
+        LongHashSet shard = shardOf(value);
+        synchronized (shard) {
+            return shard.contains(value);
+        }
+    }
+}
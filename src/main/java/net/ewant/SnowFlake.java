@@ -1,5 +1,12 @@
 package net.ewant;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
 import java.util.stream.IntStream;
 
 /**
@@ -14,50 +21,88 @@ import java.util.stream.IntStream;
  * 序列号位数决定适用性能（TPS）
  */
 public class SnowFlake {
+    // 位布局，以下各字段均由其计算得到，见{@link SnowFlakeLayout}
+    private final SnowFlakeLayout layout;
     // 起始的时间戳
-    private final static long START_TIMESTAMP = 1586765555888L;
+    private final long START_TIMESTAMP;
     // 每一部分占用的位数
-    private int SEQUENCE_BIT;// 序列号占用的位数
-    private int MACHINE_BIT; // 机器标识占用的位数
-    private int DATA_CENTER_BIT;// 数据中心占用的位数
+    private final int SEQUENCE_BIT;// 序列号占用的位数
+    private final int MACHINE_BIT; // 机器标识占用的位数
+    private final int DATA_CENTER_BIT;// 数据中心占用的位数
     // 每一部分最大值
-    private long MAX_DATA_CENTER;
-    private long MAX_MACHINE;
-    private long MAX_SEQUENCE;
+    private final long MAX_DATA_CENTER;
+    private final long MAX_MACHINE;
+    private final long MAX_SEQUENCE;
     // 每一部分向左的位移
-    private int MACHINE_LEFT_SHIFT;
-    private int DATA_CENTER_LEFT_SHIFT;
-    private int TIMESTAMP_LEFT_SHIFT;
+    private final int MACHINE_LEFT_SHIFT;
+    private final int DATA_CENTER_LEFT_SHIFT;
+    private final int TIMESTAMP_LEFT_SHIFT;
 
-    private long dataCenterId; // 数据中心
-    private long machineId; // 机器标识
+    private final long dataCenterId; // 数据中心
+    private final long machineId; // 机器标识
     private long sequence = 0L; // 序列号
     private long lastTimestamp = -1L; // 上一次时间戳
 
     private long minStep;
 
+    /**
+     * 毫秒时钟，默认系统时间，压力测试时可替换为可控时钟
+     */
+    private LongSupplier clock = System::currentTimeMillis;
+
+    /**
+     * 突发模式下，逻辑时间戳最多可领先系统时间的毫秒数，0表示不启用
+     */
+    private volatile long burstMillis;
+    private final LongAdder borrowedMillis = new LongAdder(); // 借用未来毫秒的次数
+    private final LongAdder parkCount = new LongAdder(); // 超出领先上限而挂起等待的次数
+    private final AtomicLong maxAheadMillis = new AtomicLong(); // 曾经领先系统时间的最大毫秒数
+    private final AtomicLong lastWallMillis = new AtomicLong(); // 读到过的最大系统时间，只增不减，仅开启运行指标时更新
+    private final AtomicLong backwardsFrom = new AtomicLong(); // 已记录过回拨的最大系统时间，同一次回拨只记录一次
+
+    /**
+     * 运行指标，null表示未开启
+     */
+    volatile SnowFlakeMetrics metrics;
+
     public SnowFlake(long dataCenterId, long machineId) {
         this(dataCenterId, 4, machineId, 4);
     }
 
+    /**
+     * 使用租用的实例ID作为机器标识，不设数据中心
+     * @param lease 实例ID租约，见{@link InstanceIdAllocator}
+     */
+    public SnowFlake(InstanceIdAllocator.InstanceLease lease) {
+        this(-1, 0, lease.getInstanceId(), lease.getInstanceBits());
+    }
+
     public SnowFlake(long dataCenterId, int dataCenterBits, long machineId, int machineBits) {
-        if(dataCenterBits < 0 || (dataCenterBits == 0 && dataCenterId >= 0)) throw new IllegalArgumentException("Invalid 'dataCenterId' and 'dataCenterBits' setting.");
-        if(machineBits < 0 || (machineBits == 0 && dataCenterId >= 0)) throw new IllegalArgumentException("Invalid 'machineId' and 'machineBits' setting.");
-        if(dataCenterId >= 0) DATA_CENTER_BIT = dataCenterBits;
-        if(machineId >= 0) MACHINE_BIT = machineBits;
-        // SEQUENCE_BIT做如下限制以后，建议DATA_CENTER_BIT + MACHINE_BIT <= 8
-        SEQUENCE_BIT = Math.min(22 - DATA_CENTER_BIT - MACHINE_BIT, 10);//最大10位够用了（100w/s TPS）。不要怀疑，这里是min函数没错
-        if(SEQUENCE_BIT < 7){// 最小7位，保证同一毫秒有足够的空间（10w/s TPS）
-            throw new IllegalArgumentException("Invalid SEQUENCE_BIT size: " + SEQUENCE_BIT);
+        this(legacyLayout(dataCenterId, dataCenterBits, machineId, machineBits), dataCenterId, machineId);
+    }
+
+    /**
+     * @param layout 位布局，可多个实例共享
+     * @param dataCenterId 数据中心，小于0表示不使用
+     * @param machineId 机器标识，小于0表示不使用
+     */
+    public SnowFlake(SnowFlakeLayout layout, long dataCenterId, long machineId) {
+        if (layout == null) {
+            throw new IllegalArgumentException("Argument 'layout' can't be null!");
         }
+        this.layout = layout;
+        START_TIMESTAMP = layout.epoch();
+        DATA_CENTER_BIT = layout.dataCenterBits();
+        MACHINE_BIT = layout.machineBits();
+        SEQUENCE_BIT = layout.sequenceBits();
         // 每一部分最大值
-        MAX_DATA_CENTER = -1L ^ (-1L << DATA_CENTER_BIT);
-        MAX_MACHINE = -1L ^ (-1L << MACHINE_BIT);
-        MAX_SEQUENCE = -1L ^ (-1L << SEQUENCE_BIT);
+        MAX_DATA_CENTER = layout.maxDataCenter();
+        MAX_MACHINE = layout.maxMachine();
+        MAX_SEQUENCE = layout.maxSequence();
         // 每一部分向左的位移
-        MACHINE_LEFT_SHIFT = SEQUENCE_BIT;
-        DATA_CENTER_LEFT_SHIFT = SEQUENCE_BIT + MACHINE_BIT;
-        TIMESTAMP_LEFT_SHIFT = DATA_CENTER_LEFT_SHIFT + DATA_CENTER_BIT;
+        MACHINE_LEFT_SHIFT = layout.machineShift();
+        DATA_CENTER_LEFT_SHIFT = layout.dataCenterShift();
+        TIMESTAMP_LEFT_SHIFT = layout.timestampShift();
 
         if (dataCenterId > MAX_DATA_CENTER) {
             throw new IllegalArgumentException("Argument 'dataCenterId' can't be greater than MAX_DATA_CENTER[" + MAX_DATA_CENTER + "]");
@@ -69,22 +114,26 @@ public class SnowFlake {
         this.machineId = machineId < 0 ? 0 : machineId;
     }
 
+    private static SnowFlakeLayout legacyLayout(long dataCenterId, int dataCenterBits, long machineId, int machineBits) {
+        if(dataCenterBits < 0 || (dataCenterBits == 0 && dataCenterId >= 0)) throw new IllegalArgumentException("Invalid 'dataCenterId' and 'dataCenterBits' setting.");
+        if(machineBits < 0 || (machineBits == 0 && dataCenterId >= 0)) throw new IllegalArgumentException("Invalid 'machineId' and 'machineBits' setting.");
+        // 序列号位数为 min(22 - DATA_CENTER_BIT - MACHINE_BIT, 10)，且最小7位，建议DATA_CENTER_BIT + MACHINE_BIT <= 8
+        return SnowFlakeLayout.of(dataCenterId >= 0 ? dataCenterBits : 0, machineId >= 0 ? machineBits : 0);
+    }
+
     /**
      * 注意：为保证性能这里不使用锁同步
      * @return
      */
     public long nextId() {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime < lastTimestamp) {
-            throw new RuntimeException("Clock moved backwards.  Refusing to generate id");
-        }
+        long currentTime = currentMill(lastTimestamp);
 
         if (currentTime == lastTimestamp) {
             //if条件里表示当前调用和上一次调用落在了相同毫秒内，只能通过第三部分，序列号自增来判断为唯一，所以+1.
             sequence = (sequence + 1) & MAX_SEQUENCE;
-            //同一毫秒的序列数已经达到最大，只能等待下一个毫秒
+            //同一毫秒的序列数已经达到最大，只能等待下一个毫秒（突发模式下借用下一个毫秒）
             if (sequence == 0L) {
-                currentTime = getNextMill();
+                currentTime = tilNextMill(lastTimestamp);
             }
         } else {
             //不同毫秒内，序列号置为0
@@ -93,34 +142,288 @@ public class SnowFlake {
         }
 
         lastTimestamp = currentTime;
-        //用相对毫秒数、数据中心、机器ID和自增序号拼接
-        return (currentTime - START_TIMESTAMP + minStep) << TIMESTAMP_LEFT_SHIFT //时间戳部分
+        SnowFlakeMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.onIssued(1);
+        }
+        return composeId(currentTime, sequence);
+    }
+
+    /**
+     * 批量生成ID，填满整个数组
+     * @param dst 目标数组
+     * @return dst
+     */
+    public long[] nextIds(long[] dst) {
+        nextIds(dst, 0, dst.length);
+        return dst;
+    }
+
+    /**
+     * 批量生成ID：每次直接预留同一毫秒内一段连续的序列号，而不是逐个读取时钟
+     * @param dst 目标数组
+     * @param offset 起始位置
+     * @param length 生成个数
+     */
+    public void nextIds(long[] dst, int offset, int length) {
+        int end = offset + length;
+        while (offset < end) {
+            offset += nextBlock(dst, offset, end - offset);
+        }
+    }
+
+    /**
+     * 预留一段连续序列号并写入dst
+     * @return 本次写入的个数，最少1个，最多为当前毫秒剩余的序列号数
+     */
+    int nextBlock(long[] dst, int offset, int length) {
+        long currentTime = currentMill(lastTimestamp);
+        long first = 0L;
+        if (currentTime == lastTimestamp) {
+            first = (sequence + 1) & MAX_SEQUENCE;
+            if (first == 0L) {
+                currentTime = tilNextMill(lastTimestamp);
+            }
+        }
+        int count = (int) Math.min(length, MAX_SEQUENCE - first + 1);
+        sequence = first + count - 1;
+        lastTimestamp = currentTime;
+        fillBlock(dst, offset, composeId(currentTime, first), count);
+        SnowFlakeMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.onIssued(count);
+        }
+        return count;
+    }
+
+    static void fillBlock(long[] dst, int offset, long firstId, int count) {
+        for (int i = 0; i < count; i++) {
+            dst[offset + i] = firstId + i;
+        }
+    }
+
+    /**
+     * 租用一段ID，之后从中取ID不再读取时钟
+     * @param count 租用个数
+     * @return
+     */
+    public IdRange leaseRange(int count) {
+        return new IdRange(null, nextIds(new long[count]));
+    }
+
+    /**
+     * 时间范围对应的ID范围，可直接在主键索引上做范围查询，代替对创建时间列的查询
+     * @param fromMillis 起始毫秒时间戳（含）
+     * @param toMillis 结束毫秒时间戳（不含）
+     * @return 最小ID与最大ID（均含），范围早于起始时间戳时最大ID为-1
+     */
+    public long[] idRange(long fromMillis, long toMillis) {
+        return idRange(fromMillis, toMillis, -1, -1);
+    }
+
+    /**
+     * 时间范围对应的ID范围，限定数据中心与机器
+     * 注意：限定后范围内仍会包含其他机器的ID，需结合机器条件过滤
+     * @param fromMillis 起始毫秒时间戳（含）
+     * @param toMillis 结束毫秒时间戳（不含）
+     * @param dataCenterId 数据中心，小于0表示不限
+     * @param machineId 机器标识，小于0表示不限
+     * @return 最小ID与最大ID（均含），范围早于起始时间戳时最大ID为-1
+     */
+    public long[] idRange(long fromMillis, long toMillis, long dataCenterId, long machineId) {
+        if (toMillis <= fromMillis) {
+            throw new IllegalArgumentException("Invalid time range: [" + fromMillis + ", " + toMillis + ")");
+        }
+        if (dataCenterId > MAX_DATA_CENTER || machineId > MAX_MACHINE) {
+            throw new IllegalArgumentException("Invalid 'dataCenterId' or 'machineId': " + dataCenterId + ", " + machineId);
+        }
+        long from = Math.max(0, fromMillis - START_TIMESTAMP + minStep);
+        long to = toMillis - 1 - START_TIMESTAMP + minStep;
+        long min = from << TIMESTAMP_LEFT_SHIFT
+                | Math.max(0, dataCenterId) << DATA_CENTER_LEFT_SHIFT
+                | Math.max(0, machineId) << MACHINE_LEFT_SHIFT;
+        long max = to < 0 ? -1L : to << TIMESTAMP_LEFT_SHIFT
+                | (dataCenterId < 0 ? MAX_DATA_CENTER : dataCenterId) << DATA_CENTER_LEFT_SHIFT
+                | (machineId < 0 ? MAX_MACHINE : machineId) << MACHINE_LEFT_SHIFT
+                | MAX_SEQUENCE;
+        return new long[]{min, max};
+    }
+
+    /**
+     * 时间范围内指定实例生成的ID范围，实例ID即机器标识；{@link StripedSnowFlake}包含该实例的所有通道
+     * @param fromMillis 起始毫秒时间戳（含）
+     * @param toMillis 结束毫秒时间戳（不含）
+     * @param instanceId 实例ID
+     * @return 最小ID与最大ID（均含）
+     */
+    public long[] idRangeOfInstance(long fromMillis, long toMillis, long instanceId) {
+        return idRange(fromMillis, toMillis, -1, instanceId);
+    }
+
+    /**
+     * 用相对毫秒数、数据中心、机器ID和自增序号拼接
+     * @param timestamp 毫秒时间戳
+     * @param sequence 序号
+     * @return
+     */
+    long composeId(long timestamp, long sequence) {
+        return (timestamp - START_TIMESTAMP + minStep) << TIMESTAMP_LEFT_SHIFT //时间戳部分
                 | dataCenterId << DATA_CENTER_LEFT_SHIFT               //数据中心部分
                 | machineId << MACHINE_LEFT_SHIFT                      //机器标识部分
                 | sequence;                                            //序列号部分
     }
 
+    int getSequenceBits() {
+        return SEQUENCE_BIT;
+    }
+
+    long getMaxSequence() {
+        return MAX_SEQUENCE;
+    }
+
     /**
      * 解析ID构成
      * @param id
      * @return 时间戳毫秒数、数据中心、机器ID、序号
      */
     public long[] parseIdComposition(long id){
-        long seqNum = ((1L << SEQUENCE_BIT) - 1) & id;
-        long machine = ((1L << MACHINE_BIT) - 1) & (id >> MACHINE_LEFT_SHIFT);
-        long dataCenter = ((1L << DATA_CENTER_BIT) - 1) & (id >> DATA_CENTER_LEFT_SHIFT);
-        long timestamp = (id >> TIMESTAMP_LEFT_SHIFT)  + START_TIMESTAMP - minStep;
-        return new long[]{timestamp, dataCenter, machine, seqNum};
+        return new long[]{timestampOf(id), dataCenterOf(id), machineOf(id), sequenceOf(id)};
+    }
+
+    /**
+     * @return ID中的毫秒时间戳（已扣除minStep）
+     */
+    public long timestampOf(long id) {
+        return (id >>> TIMESTAMP_LEFT_SHIFT) + START_TIMESTAMP - minStep;
+    }
+
+    public long dataCenterOf(long id) {
+        return (id >>> DATA_CENTER_LEFT_SHIFT) & MAX_DATA_CENTER;
+    }
+
+    public long machineOf(long id) {
+        return (id >>> MACHINE_LEFT_SHIFT) & MAX_MACHINE;
+    }
+
+    public long sequenceOf(long id) {
+        return id & MAX_SEQUENCE;
+    }
+
+    public SnowFlakeLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * 读取当前毫秒
+     * 突发模式下，逻辑时间戳可能领先于系统时间，此时继续沿用逻辑时间戳
+     * 开启运行指标时，只有系统时间小于读到过的最大系统时间才记为时钟回拨；突发模式的正常领先不计入（见借用、领先计数）
+     * @param lastTimestamp 上一次时间戳
+     * @return
+     */
+    long currentMill(long lastTimestamp) {
+        long currentTime = clock.getAsLong();
+        boolean rejected = lastTimestamp - currentTime > burstMillis;
+        SnowFlakeMetrics metrics = this.metrics;
+        if (metrics != null) {
+            recordClock(metrics, currentTime, lastTimestamp, rejected);
+        }
+        if (currentTime < lastTimestamp) {
+            if (rejected) {
+                throw new RuntimeException("Clock moved backwards.  Refusing to generate id");
+            }
+            return lastTimestamp;
+        }
+        return currentTime;
+    }
+
+    /**
+     * 读到过的最大系统时间只增不减。多线程下读到较小值可能只是读取后被其他线程抢先更新（读取竞争），
+     * 因此读到的值小于最大值时重新读取一次：最大值一定是此前读到的，时钟单调时重新读取的值不会小于它，
+     * 仍然小于才是真正的回拨；同一个最大值上的回拨只有CAS成功的线程记录一次
+     */
+    private void recordClock(SnowFlakeMetrics metrics, long currentTime, long lastTimestamp, boolean rejected) {
+        long maxWall = lastWallMillis.get();
+        while (currentTime > maxWall) {
+            if (lastWallMillis.compareAndSet(maxWall, currentTime)) {
+                maxWall = currentTime;
+                break;
+            }
+            maxWall = lastWallMillis.get();
+        }
+        if (currentTime < maxWall) {
+            long now = clock.getAsLong();
+            long reported = backwardsFrom.get();
+            if (now < maxWall && reported != maxWall && backwardsFrom.compareAndSet(reported, maxWall)) {
+                metrics.onClockBackwards(maxWall - now, rejected);
+                return;
+            }
+        }
+        if (rejected) {
+            metrics.onClockBackwards(lastTimestamp - currentTime, true);
+        }
     }
 
-    private long getNextMill() {
-        long mill = System.currentTimeMillis();
+    /**
+     * 序列号耗尽时获取下一个毫秒
+     * 未启用突发模式时自旋等待；启用时在领先上限内直接借用下一个毫秒，超出上限则挂起等待而不是自旋
+     * @param lastTimestamp 上一次时间戳
+     * @return
+     */
+    long tilNextMill(long lastTimestamp) {
+        SnowFlakeMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return waitNextMill(lastTimestamp);
+        }
+        Object event = SnowFlakeEvents.beginWait(lastTimestamp);
+        long start = System.nanoTime();
+        long nextMill = waitNextMill(lastTimestamp);
+        metrics.onSequenceExhausted(System.nanoTime() - start);
+        SnowFlakeEvents.commitWait(event);
+        return nextMill;
+    }
+
+    private long waitNextMill(long lastTimestamp) {
+        long burst = burstMillis;
+        if (burst <= 0) {
+            return getNextMill(lastTimestamp);
+        }
+        for (;;) {
+            long currentTime = clock.getAsLong();
+            long ahead = lastTimestamp + 1 - currentTime;
+            if (ahead <= 0) {
+                return currentTime;
+            }
+            if (ahead <= burst) {
+                borrowedMillis.increment();
+                if (ahead > maxAheadMillis.get()) {
+                    maxAheadMillis.accumulateAndGet(ahead, Math::max);
+                }
+                return lastTimestamp + 1;
+            }
+            parkCount.increment();
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(ahead - burst));
+        }
+    }
+
+    long getNextMill(long lastTimestamp) {
+        long mill = clock.getAsLong();
         while (mill <= lastTimestamp) {
-            mill = System.currentTimeMillis();
+            mill = clock.getAsLong();
         }
         return mill;
     }
 
+    /**
+     * 替换毫秒时钟，需在生成ID前设置
+     * @param clock 毫秒时钟
+     */
+    void setClock(LongSupplier clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Argument 'clock' can't be null!");
+        }
+        this.clock = clock;
+    }
+
     public void setMinStep(long minStep) {
         if(minStep < 0){
             throw new IllegalArgumentException("Invalid min time step: " + minStep);
@@ -128,6 +431,104 @@ public class SnowFlake {
         this.minStep = (minStep >> TIMESTAMP_LEFT_SHIFT);
     }
 
+    /**
+     * 开启突发模式：序列号耗尽时不再自旋等待，而是借用未来的毫秒，
+     * 使短时间内超过 MAX_SEQUENCE + 1 个/ms 的突发请求无需等待；
+     * 逻辑时间戳领先系统时间达到上限后，挂起等待系统时间追上
+     * 注意：领先上限内的时钟回拨也会被吸收，不再抛出异常
+     * @param maxAheadMillis 逻辑时间戳最多可领先系统时间的毫秒数，0表示关闭
+     */
+    public void setBurstMode(long maxAheadMillis) {
+        if(maxAheadMillis < 0){
+            throw new IllegalArgumentException("Invalid max ahead millis: " + maxAheadMillis);
+        }
+        this.burstMillis = maxAheadMillis;
+    }
+
+    /**
+     * 开启运行指标
+     * @return 指标，可通过{@link SnowFlakeMetrics#register(String)}注册为JMX MBean
+     */
+    public SnowFlakeMetrics enableMetrics() {
+        SnowFlakeMetrics metrics = new SnowFlakeMetrics();
+        setMetrics(metrics);
+        return metrics;
+    }
+
+    /**
+     * 设置运行指标，多个实例可共用一个指标；null表示关闭
+     */
+    public void setMetrics(SnowFlakeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public SnowFlakeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 上一次生成ID使用的时间戳
+     */
+    long lastIssuedTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * 将逻辑时间戳推进到指定毫秒，之后生成的ID时间戳严格大于该毫秒；已超过时不变
+     * @param timestamp 毫秒时间戳
+     */
+    void advanceTo(long timestamp) {
+        if (timestamp > lastTimestamp) {
+            lastTimestamp = timestamp;
+            sequence = MAX_SEQUENCE;
+        }
+    }
+
+    long getBurstMillis() {
+        return burstMillis;
+    }
+
+    /**
+     * 开启高水位检查点：定期将已发放的最大时间戳异步写入内存映射文件，
+     * 重启后从检查点之上继续生成，避免快速重启或时钟回拨后重复发放ID
+     * @param file 检查点文件，每个实例独占一个
+     * @param intervalMillis 写入间隔
+     * @param maxSkewMillis 可吸收的时钟回拨毫秒数，不小于该值时开启突发模式，见{@link #setBurstMode(long)}
+     * @return 检查点，关闭时写入最终高水位
+     * @throws IOException
+     */
+    public SnowFlakeCheckpoint enableCheckpoint(Path file, long intervalMillis, long maxSkewMillis) throws IOException {
+        return new SnowFlakeCheckpoint(this, file, intervalMillis, maxSkewMillis);
+    }
+
+    /**
+     * @return 当前逻辑时间戳领先系统时间的毫秒数
+     */
+    public long getAheadMillis() {
+        return Math.max(0, lastIssuedTimestamp() - clock.getAsLong());
+    }
+
+    /**
+     * @return 曾经领先系统时间的最大毫秒数
+     */
+    public long getMaxAheadMillis() {
+        return maxAheadMillis.get();
+    }
+
+    /**
+     * @return 借用未来毫秒的次数
+     */
+    public long getBorrowedMillis() {
+        return borrowedMillis.sum();
+    }
+
+    /**
+     * @return 超出领先上限而挂起等待的次数
+     */
+    public long getParkCount() {
+        return parkCount.sum();
+    }
+
     public static void main(String[] args) {
         SnowFlake snowFlake = new SnowFlake(0, 0);
         System.out.println(System.currentTimeMillis());
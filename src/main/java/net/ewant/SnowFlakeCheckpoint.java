@@ -0,0 +1,124 @@
+package net.ewant;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 雪花算法高水位检查点
+ *
+ * 后台线程按固定间隔将已发放的最大时间戳（不小于当时的系统时间）写入内存映射文件，热路径上没有任何额外开销。
+ * 进程崩溃后，检查点之后最多又过了一个写入间隔，期间发放的时间戳不超过 系统时间 + 突发领先上限，因此重启时从
+ * 检查点 + 写入间隔 + 突发领先上限 之上继续生成，即可保证不重复发放。
+ *
+ * 小幅时钟回拨（如NTP校时）由突发模式吸收：沿用逻辑时钟继续生成，而不是抛出异常。
+ *
+ * 文件格式（16字节）：MAGIC(4) + 保留(4) + 高水位毫秒时间戳(8)
+ */
+public class SnowFlakeCheckpoint implements Closeable {
+
+    private static final int MAGIC = 0x56534350;
+
+    private static final int FILE_SIZE = 16;
+
+    private final SnowFlake snowFlake;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final ScheduledExecutorService writer;
+
+    private final long resumeFrom;
+
+    private long highWater;
+
+    /**
+     * @param snowFlake 雪花算法实例，应在生成ID前开启
+     * @param file 检查点文件，每个实例独占一个
+     * @param intervalMillis 写入间隔
+     * @param maxSkewMillis 可吸收的时钟回拨毫秒数
+     * @throws IOException
+     */
+    SnowFlakeCheckpoint(SnowFlake snowFlake, Path file, long intervalMillis, long maxSkewMillis) throws IOException {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid checkpoint interval: " + intervalMillis);
+        }
+        if (maxSkewMillis < 0) {
+            throw new IllegalArgumentException("Invalid max skew millis: " + maxSkewMillis);
+        }
+        this.snowFlake = snowFlake;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        int magic = buffer.getInt(0);
+        if (magic != 0 && magic != MAGIC) {
+            channel.close();
+            throw new IOException("Not a SnowFlake checkpoint file: " + file);
+        }
+        if (snowFlake.getBurstMillis() < maxSkewMillis) {
+            snowFlake.setBurstMode(maxSkewMillis);
+        }
+        long burst = snowFlake.getBurstMillis();
+        long stored = magic == MAGIC ? buffer.getLong(8) : 0L;
+        this.resumeFrom = stored > 0 ? stored + intervalMillis + burst : -1L;
+        if (resumeFrom > 0) {
+            // 逻辑时钟最多领先系统时间burst毫秒，超出部分需等待系统时间追上
+            long wait = resumeFrom - burst - System.currentTimeMillis();
+            if (wait > maxSkewMillis + intervalMillis) {
+                channel.close();
+                throw new RuntimeException("Clock moved backwards.  Refusing to generate id");
+            }
+            while (wait > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(wait));
+                wait = resumeFrom - burst - System.currentTimeMillis();
+            }
+            snowFlake.advanceTo(resumeFrom);
+        }
+        this.highWater = stored;
+        buffer.putInt(0, MAGIC);
+        write();
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "snowflake-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleAtFixedRate(this::write, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void write() {
+        long current = Math.max(snowFlake.lastIssuedTimestamp(), System.currentTimeMillis());
+        if (current > highWater) {
+            highWater = current;
+            buffer.putLong(8, current);
+            buffer.force();
+        }
+    }
+
+    /**
+     * @return 重启后恢复的起始毫秒，之后的ID时间戳严格大于该值；没有历史检查点时为-1
+     */
+    public long getResumeFrom() {
+        return resumeFrom;
+    }
+
+    /**
+     * @return 最近一次写入的高水位毫秒时间戳
+     */
+    public synchronized long getHighWater() {
+        return highWater;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.shutdownNow();
+        write();
+        channel.close();
+    }
+}
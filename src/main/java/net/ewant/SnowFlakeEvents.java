@@ -0,0 +1,55 @@
+package net.ewant;
+
+/**
+ * 雪花算法JFR事件
+ *
+ * 核心代码不直接依赖jdk.jfr，可在任意JDK 8上编译；JFR事件类见src/jfr/java下的SnowFlakeJfrEvents，
+ * 只在JDK 11及以上构建时（jfr profile自动激活）编译进jar。
+ * 运行时没有JFR（jdk.jfr，JDK 8u262以下）或jar中没有事件类时自动跳过，不影响生成ID
+ */
+final class SnowFlakeEvents {
+
+    private static final Sink SINK = loadSink();
+
+    private SnowFlakeEvents() {
+    }
+
+    /**
+     * JFR事件的实际提交者
+     */
+    interface Sink {
+        Object beginWait(long lastTimestamp);
+
+        void commitWait(Object event);
+
+        void clockBackwards(long backwardsMillis, boolean rejected);
+    }
+
+    private static Sink loadSink() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Sink) Class.forName("net.ewant.SnowFlakeJfrEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return 序列号耗尽等待事件，未开启时返回null；调用方在等待前begin()，等待结束后commit()
+     */
+    static Object beginWait(long lastTimestamp) {
+        return SINK == null ? null : SINK.beginWait(lastTimestamp);
+    }
+
+    static void commitWait(Object event) {
+        if (event != null) {
+            SINK.commitWait(event);
+        }
+    }
+
+    static void clockBackwards(long backwardsMillis, boolean rejected) {
+        if (SINK != null) {
+            SINK.clockBackwards(backwardsMillis, rejected);
+        }
+    }
+}
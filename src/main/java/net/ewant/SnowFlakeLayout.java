@@ -0,0 +1,238 @@
+package net.ewant;
+
+import java.math.BigInteger;
+
+/**
+ * 雪花算法位布局
+ *
+ * 时间戳 + 数据中心 + 机器 + 序列号 各部分位数、最大值、位移以及起始时间戳，全部在构建时计算好。
+ * 实例不可变，可在多个生成器间共享；{@link SnowFlake}持有的对应字段也都是final的，热路径上不再读取可变字段。
+ * 解析ID各部分使用 timestampOf / dataCenterOf / machineOf / sequenceOf，不分配数组。
+ *
+ * 构建时可指定编码预算（字符表长度 + 编码位数），校验时间戳位数在预算内，见{@link Builder#codeBudget(int, int)}
+ */
+public final class SnowFlakeLayout {
+
+    /**
+     * 默认起始时间戳
+     */
+    public static final long DEFAULT_EPOCH = 1586765555888L;
+
+    private static final long MILLIS_OF_YEAR = 365L * 24 * 3600 * 1000;
+
+    private final long epoch;
+
+    private final int timestampBits;
+    private final int dataCenterBits;
+    private final int machineBits;
+    private final int sequenceBits;
+
+    private final long maxTimestamp;
+    private final long maxDataCenter;
+    private final long maxMachine;
+    private final long maxSequence;
+
+    private final int machineShift;
+    private final int dataCenterShift;
+    private final int timestampShift;
+
+    private SnowFlakeLayout(long epoch, int timestampBits, int dataCenterBits, int machineBits, int sequenceBits) {
+        this.epoch = epoch;
+        this.timestampBits = timestampBits;
+        this.dataCenterBits = dataCenterBits;
+        this.machineBits = machineBits;
+        this.sequenceBits = sequenceBits;
+        this.maxTimestamp = -1L ^ (-1L << timestampBits);
+        this.maxDataCenter = -1L ^ (-1L << dataCenterBits);
+        this.maxMachine = -1L ^ (-1L << machineBits);
+        this.maxSequence = -1L ^ (-1L << sequenceBits);
+        this.machineShift = sequenceBits;
+        this.dataCenterShift = sequenceBits + machineBits;
+        this.timestampShift = dataCenterShift + dataCenterBits;
+    }
+
+    /**
+     * 默认布局：数据中心与机器位之外，序列号最多10位、最少7位，其余为时间戳
+     * @param dataCenterBits 数据中心位数
+     * @param machineBits 机器位数
+     * @return
+     */
+    public static SnowFlakeLayout of(int dataCenterBits, int machineBits) {
+        return builder().dataCenterBits(dataCenterBits).machineBits(machineBits).build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 编码预算可容纳的位数，即满足 2^位数 <= 字符表长度^编码位数 的最大位数（该位数内的任意值都能编码），最多63位
+     * @param base 字符表长度
+     * @param maxChars 编码位数
+     * @return
+     */
+    public static int budgetBits(int base, int maxChars) {
+        if (base < 2 || maxChars < 1) {
+            throw new IllegalArgumentException("Invalid code budget: base " + base + ", chars " + maxChars);
+        }
+        return Math.min(63, BigInteger.valueOf(base).pow(maxChars).bitLength() - 1);
+    }
+
+    public long timestampOf(long id) {
+        return (id >>> timestampShift) + epoch;
+    }
+
+    public long dataCenterOf(long id) {
+        return (id >>> dataCenterShift) & maxDataCenter;
+    }
+
+    public long machineOf(long id) {
+        return (id >>> machineShift) & maxMachine;
+    }
+
+    public long sequenceOf(long id) {
+        return id & maxSequence;
+    }
+
+    /**
+     * @return 可使用年限
+     */
+    public double usableYears() {
+        return (double) maxTimestamp / MILLIS_OF_YEAR;
+    }
+
+    public long epoch() {
+        return epoch;
+    }
+
+    public int timestampBits() {
+        return timestampBits;
+    }
+
+    public int dataCenterBits() {
+        return dataCenterBits;
+    }
+
+    public int machineBits() {
+        return machineBits;
+    }
+
+    public int sequenceBits() {
+        return sequenceBits;
+    }
+
+    public long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public long maxDataCenter() {
+        return maxDataCenter;
+    }
+
+    public long maxMachine() {
+        return maxMachine;
+    }
+
+    public long maxSequence() {
+        return maxSequence;
+    }
+
+    public int machineShift() {
+        return machineShift;
+    }
+
+    public int dataCenterShift() {
+        return dataCenterShift;
+    }
+
+    public int timestampShift() {
+        return timestampShift;
+    }
+
+    @Override
+    public String toString() {
+        return "SnowFlakeLayout[" + timestampBits + "+" + dataCenterBits + "+" + machineBits + "+" + sequenceBits + ", epoch=" + epoch + "]";
+    }
+
+    public static final class Builder {
+
+        private long epoch = DEFAULT_EPOCH;
+        private int timestampBits = -1;
+        private int dataCenterBits;
+        private int machineBits;
+        private int sequenceBits = -1;
+        private int budgetBits = 63;
+
+        private Builder() {
+        }
+
+        /**
+         * @param epoch 起始时间戳，不能晚于当前时间
+         */
+        public Builder epoch(long epoch) {
+            this.epoch = epoch;
+            return this;
+        }
+
+        /**
+         * @param timestampBits 时间戳位数，不指定时使用预算内剩余的全部位数
+         */
+        public Builder timestampBits(int timestampBits) {
+            this.timestampBits = timestampBits;
+            return this;
+        }
+
+        public Builder dataCenterBits(int dataCenterBits) {
+            this.dataCenterBits = dataCenterBits;
+            return this;
+        }
+
+        public Builder machineBits(int machineBits) {
+            this.machineBits = machineBits;
+            return this;
+        }
+
+        /**
+         * @param sequenceBits 序列号位数，不指定时为 min(22 - 数据中心位数 - 机器位数, 10)
+         */
+        public Builder sequenceBits(int sequenceBits) {
+            this.sequenceBits = sequenceBits;
+            return this;
+        }
+
+        /**
+         * 编码预算：ID需在指定字符表长度下编码为不超过maxChars位，时间戳位数受此限制
+         * @param base 字符表长度，如Base32为32
+         * @param maxChars 编码位数
+         */
+        public Builder codeBudget(int base, int maxChars) {
+            this.budgetBits = budgetBits(base, maxChars);
+            return this;
+        }
+
+        public SnowFlakeLayout build() {
+            if (dataCenterBits < 0 || machineBits < 0) {
+                throw new IllegalArgumentException("Invalid 'dataCenterBits' and 'machineBits' setting.");
+            }
+            int sequence = sequenceBits >= 0 ? sequenceBits : Math.min(22 - dataCenterBits - machineBits, 10);
+            if (sequence < 7 && sequenceBits < 0) {
+                throw new IllegalArgumentException("Invalid SEQUENCE_BIT size: " + sequence);
+            }
+            if (sequence < 1) {
+                throw new IllegalArgumentException("Invalid SEQUENCE_BIT size: " + sequence);
+            }
+            int lowBits = dataCenterBits + machineBits + sequence;
+            int timestamp = timestampBits >= 0 ? timestampBits : budgetBits - lowBits;
+            if (timestamp + lowBits > budgetBits) {
+                throw new IllegalArgumentException("Layout needs " + (timestamp + lowBits) + " bits, exceeds code budget of " + budgetBits + " bits.");
+            }
+            if ((-1L ^ (-1L << Math.max(0, timestamp))) < MILLIS_OF_YEAR) {
+                throw new IllegalArgumentException("Invalid timestamp bits: " + timestamp + ", usable less than one year.");
+            }
+            if (epoch < 0 || epoch > System.currentTimeMillis()) {
+                throw new IllegalArgumentException("Invalid epoch: " + epoch);
+            }
+            return new SnowFlakeLayout(epoch, timestamp, dataCenterBits, machineBits, sequence);
+        }
+    }
+}
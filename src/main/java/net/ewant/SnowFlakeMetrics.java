@@ -0,0 +1,151 @@
+package net.ewant;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 雪花算法运行指标
+ *
+ * 所有计数器都是分段的LongAdder，多线程更新无竞争。未开启时SnowFlake持有的指标为null，
+ * 热路径上只多一次判空；序列号耗尽等待、时钟回拨等慢路径才会记录耗时与JFR事件。
+ * 可注册为JMX MBean（net.ewant:type=SnowFlake,name=xxx），JFR事件见{@link SnowFlakeEvents}
+ */
+public class SnowFlakeMetrics implements SnowFlakeMetricsMBean {
+
+    private static final int HISTOGRAM_BUCKETS = 24;
+
+    private final LongAdder issuedIds = new LongAdder();
+    private final LongAdder sequenceExhausted = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder[] waitHistogram = new LongAdder[HISTOGRAM_BUCKETS];
+    private final LongAdder clockBackwards = new LongAdder();
+    private final LongAdder clockBackwardsRejected = new LongAdder();
+    private final AtomicLong maxBackwardsMillis = new AtomicLong();
+
+    private ObjectName objectName;
+
+    public SnowFlakeMetrics() {
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            waitHistogram[i] = new LongAdder();
+        }
+    }
+
+    void onIssued(int count) {
+        issuedIds.add(count);
+    }
+
+    void onSequenceExhausted(long waitNanos) {
+        sequenceExhausted.increment();
+        this.waitNanos.add(waitNanos);
+        if (waitNanos > maxWaitNanos.get()) {
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+        long micros = waitNanos / 1000;
+        int bucket = micros == 0 ? 0 : Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        waitHistogram[bucket].increment();
+    }
+
+    void onClockBackwards(long backwardsMillis, boolean rejected) {
+        clockBackwards.increment();
+        if (rejected) {
+            clockBackwardsRejected.increment();
+        }
+        if (backwardsMillis > maxBackwardsMillis.get()) {
+            maxBackwardsMillis.accumulateAndGet(backwardsMillis, Math::max);
+        }
+        SnowFlakeEvents.clockBackwards(backwardsMillis, rejected);
+    }
+
+    /**
+     * 注册为JMX MBean
+     * @param name 实例名，如 "order-0"
+     * @return this
+     */
+    public synchronized SnowFlakeMetrics register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("net.ewant:type=SnowFlake,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+            this.objectName = objectName;
+            return this;
+        } catch (JMException e) {
+            throw new IllegalStateException("Register SnowFlake metrics failed: " + name, e);
+        }
+    }
+
+    public synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                throw new IllegalStateException("Unregister SnowFlake metrics failed: " + objectName, e);
+            } finally {
+                objectName = null;
+            }
+        }
+    }
+
+    @Override
+    public long getIssuedIds() {
+        return issuedIds.sum();
+    }
+
+    @Override
+    public long getSequenceExhausted() {
+        return sequenceExhausted.sum();
+    }
+
+    @Override
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    @Override
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    @Override
+    public long[] getWaitHistogram() {
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            histogram[i] = waitHistogram[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getClockBackwards() {
+        return clockBackwards.sum();
+    }
+
+    @Override
+    public long getClockBackwardsRejected() {
+        return clockBackwardsRejected.sum();
+    }
+
+    @Override
+    public long getMaxBackwardsMillis() {
+        return maxBackwardsMillis.get();
+    }
+
+    @Override
+    public void reset() {
+        issuedIds.reset();
+        sequenceExhausted.reset();
+        waitNanos.reset();
+        maxWaitNanos.set(0);
+        for (LongAdder bucket : waitHistogram) {
+            bucket.reset();
+        }
+        clockBackwards.reset();
+        clockBackwardsRejected.reset();
+        maxBackwardsMillis.set(0);
+    }
+}
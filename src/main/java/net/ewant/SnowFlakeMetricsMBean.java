@@ -0,0 +1,49 @@
+package net.ewant;
+
+/**
+ * 雪花算法运行指标（JMX）
+ */
+public interface SnowFlakeMetricsMBean {
+
+    /**
+     * @return 已生成的ID数
+     */
+    long getIssuedIds();
+
+    /**
+     * @return 同一毫秒序列号耗尽（达到MAX_SEQUENCE）的次数
+     */
+    long getSequenceExhausted();
+
+    /**
+     * @return 序列号耗尽后等待下一毫秒的总耗时（纳秒）
+     */
+    long getWaitNanos();
+
+    /**
+     * @return 单次等待的最大耗时（纳秒）
+     */
+    long getMaxWaitNanos();
+
+    /**
+     * @return 等待耗时直方图，第i项为耗时在 [2^(i-1), 2^i) 微秒内的次数，第0项为小于1微秒
+     */
+    long[] getWaitHistogram();
+
+    /**
+     * @return 检测到时钟回拨（系统时间小于读到过的最大系统时间，同一次回拨记一次）的次数（含被突发模式吸收的），突发模式下逻辑时间戳的正常领先不计入
+     */
+    long getClockBackwards();
+
+    /**
+     * @return 因时钟回拨而拒绝生成ID（抛出异常）的次数
+     */
+    long getClockBackwardsRejected();
+
+    /**
+     * @return 检测到的最大回拨毫秒数
+     */
+    long getMaxBackwardsMillis();
+
+    void reset();
+}
@@ -1,6 +1,7 @@
 package net.ewant;
 
 import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.stream.IntStream;
 /**
  * 可根据配置生成指定 数字n+字母m 组合
@@ -12,41 +13,171 @@ import java.util.stream.IntStream;
 public class SteerableSerial {
     private static final String BASE_NUMS = "23456789";
     private static final String BASE_CHARS = "ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnpqrstuvwxyz";
+    private static final AlphabetCodec CHARS_CODEC = new AlphabetCodec(BASE_CHARS);
+
+    /**
+     * 预先计算的数字位置布局最多个数，超过时退化为逐个随机选位置
+     */
+    private static final int MAX_LAYOUTS = 1 << 16;
 
     private final Random random = new Random();
     private int numCount;
     private int codeLength;
 
+    /**
+     * 并发模式：每个线程使用独立的SplittableRandom，不再争用同一个Random的种子
+     */
+    private final ThreadLocal<SplittableRandom> threadRandom;
+    private final SplittableRandom rootRandom;
+
+    /**
+     * 唯一模式：值位来自雪花算法，保证不重复
+     */
+    private final SnowFlake snowFlake;
+
+    /**
+     * 所有 numCount 个数字位置的组合（位掩码），null表示组合过多未预先计算
+     */
+    private final int[] layouts;
+    /**
+     * 每个位置上的数字字符
+     */
+    private final char[] digits;
+    private final long maxRang;
+
     public SteerableSerial(){
         this(4, 10);
     }
 
     public SteerableSerial(int numCount, int codeLength){
+        this(numCount, codeLength, false, null);
+    }
+
+    /**
+     * @param numCount 数字个数
+     * @param codeLength 编码长度
+     * @param concurrent 是否多线程共享使用，true时每个线程使用独立的随机数流
+     */
+    public SteerableSerial(int numCount, int codeLength, boolean concurrent){
+        this(numCount, codeLength, concurrent, null);
+    }
+
+    /**
+     * 唯一模式：值位与数字位置布局由雪花算法ID换算而来，保证不重复（不再随机）
+     * 雪花算法ID必须小于{@link #capacity()}，因此需要足够大的字符空间与尽量少的机器位，
+     * 如 new SteerableSerial(2, 14, new ConcurrentSnowFlake(-1, 0, 0, 1))
+     * @param numCount 数字个数
+     * @param codeLength 编码长度
+     * @param snowFlake 雪花算法实例，多线程共享时使用{@link ConcurrentSnowFlake}
+     */
+    public SteerableSerial(int numCount, int codeLength, SnowFlake snowFlake){
+        this(numCount, codeLength, false, snowFlake);
+        if(snowFlake == null){
+            throw new IllegalArgumentException("Argument 'snowFlake' can't be null!");
+        }
+        if(layouts == null){
+            throw new IllegalArgumentException("Too many number layouts for unique mode, numCount: " + numCount + ", codeLength: " + codeLength);
+        }
+    }
+
+    private SteerableSerial(int numCount, int codeLength, boolean concurrent, SnowFlake snowFlake){
+        // 数字位置布局用int位掩码表示，codeLength最多30位
+        if(codeLength < 1 || codeLength > 30 || numCount < 0 || numCount > codeLength){
+            throw new IllegalArgumentException("Invalid numCount: " + numCount + ", codeLength: " + codeLength);
+        }
         this.numCount = numCount;
         this.codeLength = codeLength;
+        this.snowFlake = snowFlake;
+        this.rootRandom = concurrent ? new SplittableRandom() : null;
+        this.threadRandom = concurrent ? ThreadLocal.withInitial(this::splitRandom) : null;
+        this.layouts = layouts(numCount, codeLength);
+        this.digits = new char[codeLength];
+        for (int i = 0; i < codeLength; i++) {
+            digits[i] = BASE_NUMS.charAt(i % BASE_NUMS.length());
+        }
+        long maxRang = (long) Math.pow(BASE_CHARS.length(), codeLength - numCount);
+        maxRang = maxRang >> codeLength;
+        maxRang &= ~1;// 将指定bit置为0
+        this.maxRang = maxRang;
+    }
+
+    private SplittableRandom splitRandom(){
+        synchronized (rootRandom) {
+            return rootRandom.split();
+        }
+    }
+
+    private static int[] layouts(int numCount, int codeLength){
+        long count = 1;
+        for (int i = 0; i < numCount; i++) {
+            count = count * (codeLength - i) / (i + 1);
+        }
+        if(count > MAX_LAYOUTS){
+            return null;
+        }
+        // 直接按升序枚举恰好numCount位为1的组合（Gosper's hack），共C(codeLength, numCount)个，不再遍历全部2^codeLength个掩码
+        int[] layouts = new int[(int) count];
+        int mask = (1 << numCount) - 1;
+        for (int index = 0; index < layouts.length; index++) {
+            layouts[index] = mask;
+            if(mask == 0){
+                break;
+            }
+            int lowest = mask & -mask;
+            int ripple = mask + lowest;
+            mask = (((ripple ^ mask) >>> 2) / lowest) | ripple;
+        }
+        return layouts;
+    }
+
+    /**
+     * @return 不重复编码的总数（数字位置布局数 × 值空间）
+     */
+    public long capacity(){
+        if(layouts == null){
+            return -1;
+        }
+        return Long.MAX_VALUE / layouts.length < maxRang ? Long.MAX_VALUE : layouts.length * maxRang;
+    }
+
+    private int nextInt(int bound){
+        return threadRandom != null ? threadRandom.get().nextInt(bound) : random.nextInt(bound);
     }
 
     public String getCode(){
-        int numIndex = 0;
-        char[] buf = new char[codeLength];
-        for(int i=0;i<numCount;i++){
-            int index = random.nextInt(codeLength);
-            while (buf[index] != 0){// 不能重复
-                index = random.nextInt(codeLength);
+        int numIndex;
+        long value;
+        if(snowFlake != null){
+            long id = snowFlake.nextId();
+            if(id >= capacity()){
+                throw new IllegalStateException("SnowFlake id exceeds code capacity[" + capacity() + "], use a larger codeLength.");
             }
-            buf[index] = BASE_NUMS.charAt(index % BASE_NUMS.length());
-            numIndex |= 1 << index;
+            numIndex = layouts[(int) (id % layouts.length)];
+            value = id / layouts.length;
+        }else{
+            if(layouts != null){
+                numIndex = layouts[nextInt(layouts.length)];
+            }else{
+                numIndex = 0;
+                for(int i=0;i<numCount;i++){
+                    int index = nextInt(codeLength);
+                    while ((numIndex & 1 << index) != 0){// 不能重复
+                        index = nextInt(codeLength);
+                    }
+                    numIndex |= 1 << index;
+                }
+            }
+            value = threadRandom != null ? threadRandom.get().nextLong(maxRang) : (long) (maxRang * random.nextDouble());
         }
-        int charLen = BASE_CHARS.length();
-        long maxRang = (long) Math.pow(charLen, codeLength - numCount);
-        maxRang = maxRang >> codeLength;
-        maxRang &= ~1;// 将指定bit置为0
-        long value = (long) (maxRang * random.nextDouble());
         value = value << codeLength;
         value |= numIndex;
+        int charLen = BASE_CHARS.length();
+        char[] buf = new char[codeLength];
         for(int i=0; i<codeLength; i++) {
-            if(buf[i] == 0){
-                buf[i] = BASE_CHARS.charAt((int) (value % charLen));
+            if((numIndex & 1 << i) != 0){
+                buf[i] = digits[i];
+            }else{
+                buf[i] = CHARS_CODEC.charAt((int) (value % charLen));
                 value /= charLen;
             }
         }
@@ -66,7 +197,7 @@ public class SteerableSerial {
             if(ch >= 50 && ch <=57 ){//数字2-9
                 numIndex |= 1 << i;
             }else{
-                src += BASE_CHARS.indexOf(ch) * value;
+                src += CHARS_CODEC.indexOf(ch) * value;
                 value *= charLen;
             }
         }
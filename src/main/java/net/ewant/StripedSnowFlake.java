@@ -0,0 +1,194 @@
+package net.ewant;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 分道（lane）雪花算法
+ *
+ * 将机器位拆分为：实例ID + 通道号，即 machineBits = instanceBits + laneBits
+ * 1 00000000000000000000000000000000000000000 [instance] [lane] 0000000000
+ *
+ * 每个通道持有独立的{@link ConcurrentSnowFlake}（独立的时间戳与序列号状态，状态已做缓存行填充），
+ * 线程按 Thread.getId() & (通道数 - 1) 映射到固定通道，不同通道之间没有共享写，
+ * 因此单个实例的吞吐量随通道数（CPU核数）增长，而不再受限于一个序列号计数器。
+ * 线程数多于通道数（或线程ID取模后冲突）时，多个线程共用同一通道，通道内以CAS保证唯一，只是这些线程之间仍有竞争。
+ *
+ * 使用方式，与{@link PrefixIdGenerator}、{@link FixedLengthIdGenerator}的11位机器位保持一致：
+ * new FixedLengthIdGenerator(new StripedSnowFlake(instanceId, 11 - laneBits, laneBits))
+ */
+public class StripedSnowFlake extends SnowFlake {
+
+    private final ConcurrentSnowFlake[] lanes;
+
+    private final int laneBits;
+
+    private final int laneMask;
+
+    public StripedSnowFlake(long instanceId, int instanceBits, int laneBits) {
+        super(-1, 0, checkInstance(instanceId, instanceBits, laneBits) << laneBits, instanceBits + laneBits);
+        this.laneBits = laneBits;
+        this.laneMask = (1 << laneBits) - 1;
+        this.lanes = new ConcurrentSnowFlake[1 << laneBits];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ConcurrentSnowFlake(-1, 0, instanceId << laneBits | i, instanceBits + laneBits);
+        }
+    }
+
+    private static long checkInstance(long instanceId, int instanceBits, int laneBits) {
+        if (laneBits < 0 || laneBits > 8) {
+            throw new IllegalArgumentException("Invalid 'laneBits' setting: " + laneBits);
+        }
+        if (instanceBits < 0 || instanceId < 0 || instanceId > (-1L ^ (-1L << instanceBits))) {
+            throw new IllegalArgumentException("Invalid 'instanceId' and 'instanceBits' setting.");
+        }
+        return instanceId;
+    }
+
+    /**
+     * 按CPU核数计算通道位数（向上取2的幂）
+     * @param maxLaneBits 最多使用的通道位数
+     * @return
+     */
+    public static int laneBitsForCores(int maxLaneBits) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int bits = 32 - Integer.numberOfLeadingZeros(cores - 1);
+        return Math.min(bits, maxLaneBits);
+    }
+
+    @Override
+    public long nextId() {
+        return lanes[laneIndex()].nextId();
+    }
+
+    @Override
+    int nextBlock(long[] dst, int offset, int length) {
+        return lanes[laneIndex()].nextBlock(dst, offset, length);
+    }
+
+    private int laneIndex() {
+        return (int) Thread.currentThread().getId() & laneMask;
+    }
+
+    @Override
+    public void setMinStep(long minStep) {
+        super.setMinStep(minStep);
+        for (ConcurrentSnowFlake lane : lanes) {
+            lane.setMinStep(minStep);
+        }
+    }
+
+    @Override
+    public void setBurstMode(long maxAheadMillis) {
+        super.setBurstMode(maxAheadMillis);
+        for (ConcurrentSnowFlake lane : lanes) {
+            lane.setBurstMode(maxAheadMillis);
+        }
+    }
+
+    @Override
+    void setClock(LongSupplier clock) {
+        super.setClock(clock);
+        for (ConcurrentSnowFlake lane : lanes) {
+            lane.setClock(clock);
+        }
+    }
+
+    @Override
+    public void setMetrics(SnowFlakeMetrics metrics) {
+        super.setMetrics(metrics);
+        for (ConcurrentSnowFlake lane : lanes) {
+            lane.setMetrics(metrics);
+        }
+    }
+
+    @Override
+    long lastIssuedTimestamp() {
+        long last = -1L;
+        for (ConcurrentSnowFlake lane : lanes) {
+            last = Math.max(last, lane.lastIssuedTimestamp());
+        }
+        return last;
+    }
+
+    @Override
+    public long[] idRangeOfInstance(long fromMillis, long toMillis, long instanceId) {
+        long min = idRange(fromMillis, toMillis, -1, instanceId << laneBits)[0];
+        long max = idRange(fromMillis, toMillis, -1, instanceId << laneBits | laneMask)[1];
+        return new long[]{min, max};
+    }
+
+    @Override
+    void advanceTo(long timestamp) {
+        for (ConcurrentSnowFlake lane : lanes) {
+            lane.advanceTo(timestamp);
+        }
+    }
+
+    @Override
+    public long getMaxAheadMillis() {
+        long max = 0;
+        for (ConcurrentSnowFlake lane : lanes) {
+            max = Math.max(max, lane.getMaxAheadMillis());
+        }
+        return max;
+    }
+
+    @Override
+    public long getBorrowedMillis() {
+        long sum = 0;
+        for (ConcurrentSnowFlake lane : lanes) {
+            sum += lane.getBorrowedMillis();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getParkCount() {
+        long sum = 0;
+        for (ConcurrentSnowFlake lane : lanes) {
+            sum += lane.getParkCount();
+        }
+        return sum;
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * 解析ID构成，前4项与{@link SnowFlake#parseIdComposition(long)}一致（机器ID位置为实例ID，不含通道号），第5项为通道号
+     * @param id
+     * @return 时间戳毫秒数、数据中心、实例ID、序号、通道号
+     */
+    @Override
+    public long[] parseIdComposition(long id) {
+        long[] composition = super.parseIdComposition(id);
+        return new long[]{composition[0], composition[1], instanceOf(id), composition[3], laneOf(id)};
+    }
+
+    /**
+     * @return ID中的实例ID（机器ID去掉通道号）
+     */
+    public long instanceOf(long id) {
+        return machineOf(id) >> laneBits;
+    }
+
+    /**
+     * @return ID中的通道号
+     */
+    public long laneOf(long id) {
+        return machineOf(id) & laneMask;
+    }
+
+    public static void main(String[] args) {
+        int laneBits = laneBitsForCores(4);
+        StripedSnowFlake snowFlake = new StripedSnowFlake(3, 11 - laneBits, laneBits);
+        FixedLengthIdGenerator generator = new FixedLengthIdGenerator(snowFlake);
+        for (int i = 0; i < 10; i++) {
+            String code = generator.nextCode();
+            long serial = generator.getSerial(code);
+            long[] composition = generator.parseIdComposition(serial);
+            System.out.println(code + "->" + serial + " instance: " + composition[2] + " lane: " + composition[4] + " sequence: " + composition[3]);
+        }
+    }
+}
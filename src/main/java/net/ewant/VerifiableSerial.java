@@ -1,9 +1,16 @@
 package net.ewant;
 
+import java.nio.ByteBuffer;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 /**
  * 【高性能（百万/秒），可验证，兑换码、序列号生成器】
@@ -31,6 +38,7 @@ public class VerifiableSerial {
      * 基准字符串必须保证是2的指数级，当前取2^5，32个字符（顺序不定，保证各个字符唯一即可）
      */
     private static final String BASE_CHARS = "9768ZBTNUFPHVRXMDGQKSCEJWLYA5342";
+    private static final AlphabetCodec CODEC = new AlphabetCodec(BASE_CHARS);
     /**
      * 用于 位与 运算，映射到BASE_CHARS
      */
@@ -57,47 +65,124 @@ public class VerifiableSerial {
      * @return
      */
     public static String create(int actId, int codeLength){
+        return create(actId, codeLength, null);
+    }
+
+    /**
+     * 生成带密钥校验位的可验证序列码
+     * @param actId 活动ID
+     * @param codeLength
+     * @param mac 带密钥校验位，null表示使用默认校验位
+     * @return
+     */
+    public static String create(int actId, int codeLength, SerialMac mac){
+        int checkBits = checkBits(mac);
+        codeLength = fitCodeLength(actId, codeLength, checkBits);
+        // 随机数据
+        long randData = (long)((1L << randBitLength(actId, codeLength, checkBits)) * Math.random());
+        // 将结果按对齐位映射到基准字符表
+        return encode(composeSerial(actId, codeLength, randData, mac), codeLength, idBitLength(actId));
+    }
+
+    static int checkBits(SerialMac mac){
+        return mac == null ? checkBitLength : mac.checkBits();
+    }
+
+    /**
+     * 确定实际字符长度：ID过大无法保证最小随机空间时，字符长度自增
+     * @param actId 活动ID
+     * @param codeLength 传入的字符长度
+     * @return
+     */
+    static int fitCodeLength(int actId, int codeLength){
+        return fitCodeLength(actId, codeLength, checkBitLength);
+    }
+
+    static int fitCodeLength(int actId, int codeLength, int checkBits){
+        for(;;){
+            // 总位数
+            int totalBitLength = charBitAlign * codeLength;
+            if(totalBitLength > 64){
+                throw new IllegalArgumentException("The argument [codeLength] must less than 13 , but is " + codeLength + ". You need to set a smaller one or turn down MIN_RAND_RANGE setting.");
+            }
+            // 保证足够大的随机空间
+            int randBitLength = randBitLength(actId, codeLength, checkBits);
+            if(randBitLength >= 0 && (1L << randBitLength) >= MIN_RAND_RANGE){
+                return codeLength;
+            }
+            codeLength++;
+        }
+    }
+
+    /**
+     * id 位数
+     */
+    static int idBitLength(int actId){
+        return actId > 0 ? 32 - Integer.numberOfLeadingZeros(actId) : 0;
+    }
+
+    /**
+     * 数据位数
+     */
+    static int randBitLength(int actId, int codeLength){
+        return randBitLength(actId, codeLength, checkBitLength);
+    }
+
+    static int randBitLength(int actId, int codeLength, int checkBits){
+        return charBitAlign * codeLength - idBitLength(actId) - checkBits;
+    }
+
+    /**
+     * 拼接序列：高位标志位 + 中位数据位 + 低位校验位
+     * @param actId 活动ID
+     * @param codeLength 实际字符长度
+     * @param randData 数据位
+     * @return
+     */
+    static long composeSerial(int actId, int codeLength, long randData){
+        return composeSerial(actId, codeLength, randData, null);
+    }
+
+    static long composeSerial(int actId, int codeLength, long randData, SerialMac mac){
         long sum = 0L;
-        // 总位数
+        int checkBits = checkBits(mac);
         int totalBitLength = charBitAlign * codeLength;
-        if(totalBitLength > 64){
-            throw new IllegalArgumentException("The argument [codeLength] must less than 13 , but is " + codeLength + ". You need to set a smaller one or turn down MIN_RAND_RANGE setting.");
-        }
-        // id 位数
-        int idBitLength = 0;
-        String idLengthFlag = "";
-        if(actId > 0){
-            idBitLength = Integer.toBinaryString(actId).length();
+        int idBitLength = idBitLength(actId);
+        if(idBitLength > 0){
             sum += (long)actId << (totalBitLength - idBitLength);      //高位标志位
-            idLengthFlag = String.valueOf(BASE_CHARS.charAt(idBitLength & CHAR_AND));
         }
-        // 数据位数
-        int randBitLength = totalBitLength - idBitLength - checkBitLength;
-        // 保证足够大的随机空间
-        if((1L << randBitLength) < MIN_RAND_RANGE){
-            return create(actId, ++codeLength);
-        }
-        // 随机数据
-        long randData = (long)((1L << randBitLength) * Math.random());
-        //System.out.println(Long.toBinaryString(randData));
-        sum += randData << checkBitLength;                            // 中位数据位
+        sum += randData << checkBits;                                 // 中位数据位
         // 校验和
-        long checkNum = (sum >> checkBitLength) % ((1 << checkBitLength) - 1);
+        long checkNum = mac == null ? (sum >> checkBits) % ((1 << checkBits) - 1) : mac.tag(sum >> checkBits);
         sum += checkNum;                                              // 低位校验位
+        return sum;
+    }
 
-        // 将结果按对齐位映射到基准字符表
-        return idLengthFlag + serialToCode(sum, codeLength);
+    /**
+     * 将序列转换为兑换码
+     * @param serial 序列，@see getSerial()
+     * @param actId 活动ID
+     * @param codeLength 单个兑换码长度（与生成时传入的一致）
+     * @return
+     */
+    public static String serialToCode(long serial, int actId, int codeLength){
+        return encode(serial, fitCodeLength(actId, codeLength), idBitLength(actId));
     }
 
-    private static String serialToCode(long serial, int codeLength){
-        StringBuffer codeSerial = new StringBuffer();
-        long tmpValue = serial;
-        for (int i = 0; i < codeLength; i++) {
-            int code = (int) (tmpValue & CHAR_AND);
-            codeSerial.append(BASE_CHARS.charAt(code));
-            tmpValue = tmpValue >> charBitAlign;
+    /**
+     * @param serial 序列
+     * @param codeLength 字符长度
+     * @param idBitLength ID位长，大于0时在前头添加一个描述ID位长度的字符
+     * @return
+     */
+    private static String encode(long serial, int codeLength, int idBitLength){
+        int start = idBitLength > 0 ? 1 : 0;
+        char[] buf = new char[start + codeLength];
+        if(start > 0){
+            buf[0] = CODEC.charAt(idBitLength & CHAR_AND);
         }
-        return codeSerial.reverse().toString();// 低位反转(如不反转，解码时需倒着解)
+        CODEC.encode(serial, buf, start, codeLength);
+        return new String(buf);
     }
 
     public static boolean verify(String code, boolean hasId){
@@ -105,6 +190,28 @@ public class VerifiableSerial {
         return verify(sum);
     }
 
+    /**
+     * 校验带密钥校验位的兑换码
+     * @param code 兑换码
+     * @param hasId 是否包含活动ID
+     * @param mac 生成时使用的带密钥校验位
+     * @return
+     */
+    public static boolean verify(String code, boolean hasId, SerialMac mac){
+        return verify(getSerial(code, hasId), mac);
+    }
+
+    static boolean verify(long sum, SerialMac mac){
+        if(mac == null){
+            return verify(sum);
+        }
+        if(sum < 0){
+            return false;
+        }
+        int checkBits = mac.checkBits();
+        return mac.tag(sum >> checkBits) == (sum & ((1L << checkBits) - 1));
+    }
+
     private static boolean verify(long sum){
         if(sum < 0){
             return false;
@@ -121,20 +228,42 @@ public class VerifiableSerial {
         return false;
     }
 
-    private static long getSerial(String code, boolean hasId){
-        long sum = 0;
-        int baseLen = BASE_CHARS.length();
-        int codeLength = code.length();
-        int startIndex = hasId ? 1 : 0;
-        for (int i = startIndex; i < codeLength; i++) {
-            long originNum = BASE_CHARS.indexOf(code.charAt(i));
-            if (originNum >= baseLen) {
-                return -1; // 字符非法
-            }
-            sum = sum << charBitAlign;
-            sum += originNum;
+    /**
+     * 将序列转换为兑换码并写入字符数组
+     * @param serial 序列，@see getSerial()
+     * @param actId 活动ID
+     * @param codeLength 单个兑换码长度（与生成时传入的一致）
+     * @param dst 目标数组
+     * @param offset 起始位置
+     * @return 写入结束后的位置
+     */
+    public static int serialToCode(long serial, int actId, int codeLength, char[] dst, int offset){
+        int idBitLength = idBitLength(actId);
+        if(idBitLength > 0){
+            dst[offset++] = CODEC.charAt(idBitLength & CHAR_AND);
         }
-        return sum;
+        return CODEC.encode(serial, dst, offset, fitCodeLength(actId, codeLength));
+    }
+
+    /**
+     * 兑换码的实际长度（含ID位长度标识字符）
+     * @param actId 活动ID
+     * @param codeLength 传入的字符长度
+     * @return
+     */
+    public static int codeLengthOf(int actId, int codeLength){
+        return fitCodeLength(actId, codeLength) + (actId > 0 ? 1 : 0);
+    }
+
+    /**
+     * 获取兑换码对应的序列（不含ID位长度标识字符）
+     * @param code 兑换码
+     * @param hasId 是否包含活动ID
+     * @return 包含非法字符时返回-1
+     */
+    public static long getSerial(String code, boolean hasId){
+        int startIndex = hasId ? 1 : 0;
+        return CODEC.decode(code, startIndex, code.length() - startIndex);
     }
 
     /**
@@ -143,16 +272,155 @@ public class VerifiableSerial {
      * @return
      */
     public static int getActId(String code){
+        return getActId(code, null);
+    }
+
+    /**
+     * 通过带密钥校验位的兑换码获取活动ID
+     * @param code
+     * @param mac 生成时使用的带密钥校验位，null表示默认校验位
+     * @return
+     */
+    public static int getActId(String code, SerialMac mac){
         long sum = getSerial(code, true);
-        if(verify(sum)){
-            int idBitLength = BASE_CHARS.indexOf(code.charAt(0));
+        if(verify(sum, mac)){
+            int idBitLength = CODEC.indexOf(code.charAt(0));
             int totalBitLength = charBitAlign * (code.length() - 1);
-            int randBitLength = totalBitLength - idBitLength - checkBitLength;
-            return (int) (sum >> randBitLength + checkBitLength);
+            return (int) (sum >> totalBitLength - idBitLength);
         }
         return -1;
     }
 
+    /**
+     * 批量校验
+     * @param codes 兑换码
+     * @param hasId 是否包含活动ID
+     * @param mac 带密钥校验位，null表示默认校验位
+     * @return
+     */
+    public static BatchVerifyResult verifyAll(String[] codes, boolean hasId, SerialMac mac){
+        BitSet valid = new BitSet(codes.length);
+        int[] actIds = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            actIds[i] = verifyEntry(codes[i], 0, codes[i] == null ? 0 : codes[i].length(), hasId, mac);
+            if(actIds[i] >= 0){
+                valid.set(i);
+            }
+        }
+        return new BatchVerifyResult(valid, actIds);
+    }
+
+    /**
+     * 批量校验，大批量时按64的整数倍分块并行，各块写入互不重叠的位图字
+     */
+    public static BatchVerifyResult verifyAllParallel(String[] codes, boolean hasId, SerialMac mac){
+        final int chunk = 64 * 1024;
+        long[] words = new long[(codes.length + 63) >>> 6];
+        int[] actIds = new int[codes.length];
+        IntStream.range(0, (codes.length + chunk - 1) / chunk).parallel().forEach(c -> {
+            int end = Math.min(codes.length, (c + 1) * chunk);
+            for (int i = c * chunk; i < end; i++) {
+                actIds[i] = verifyEntry(codes[i], 0, codes[i] == null ? 0 : codes[i].length(), hasId, mac);
+                if(actIds[i] >= 0){
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+        });
+        return new BatchVerifyResult(BitSet.valueOf(words), actIds);
+    }
+
+    /**
+     * 批量校验以换行分隔的兑换码文本（忽略'\r'）
+     */
+    public static BatchVerifyResult verifyAll(CharSequence lines, boolean hasId, SerialMac mac){
+        int count = 0;
+        int length = lines.length();
+        for (int i = 0; i < length; i++) {
+            if(lines.charAt(i) == '\n'){
+                count++;
+            }
+        }
+        if(length > 0 && lines.charAt(length - 1) != '\n'){
+            count++;
+        }
+        BitSet valid = new BitSet(count);
+        int[] actIds = new int[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = start;
+            while (end < length && lines.charAt(end) != '\n') {
+                end++;
+            }
+            int codeEnd = end > start && lines.charAt(end - 1) == '\r' ? end - 1 : end;
+            actIds[i] = verifyEntry(lines, start, codeEnd - start, hasId, mac);
+            if(actIds[i] >= 0){
+                valid.set(i);
+            }
+            start = end + 1;
+        }
+        return new BatchVerifyResult(valid, actIds);
+    }
+
+    /**
+     * 批量校验buffer中的定长记录（如CodeExporter导出的TEXT文件），从position到limit，不改变position
+     * @param buffer ASCII编码的兑换码
+     * @param codeWidth 兑换码长度
+     * @param recordWidth 记录长度（兑换码 + 分隔符）
+     * @param hasId 是否包含活动ID
+     * @param mac 带密钥校验位，null表示默认校验位
+     * @return
+     */
+    public static BatchVerifyResult verifyAll(ByteBuffer buffer, int codeWidth, int recordWidth, boolean hasId, SerialMac mac){
+        if(codeWidth < 1 || recordWidth < codeWidth){
+            throw new IllegalArgumentException("Invalid code width: " + codeWidth + ", record width: " + recordWidth);
+        }
+        int count = (buffer.remaining() + recordWidth - codeWidth) / recordWidth;
+        BitSet valid = new BitSet(count);
+        int[] actIds = new int[count];
+        int position = buffer.position();
+        int start = hasId ? 1 : 0;
+        for (int i = 0; i < count; i++, position += recordWidth) {
+            long sum = CODEC.decode(buffer, position + start, codeWidth - start);
+            int flag = hasId ? CODEC.indexOf((char) (buffer.get(position) & 0xFF)) : 0;
+            actIds[i] = verifyEntry(sum, flag, codeWidth, hasId, mac);
+            if(actIds[i] >= 0){
+                valid.set(i);
+            }
+        }
+        return new BatchVerifyResult(valid, actIds);
+    }
+
+    /**
+     * 校验单个兑换码
+     * @return 校验通过返回活动ID（不含活动ID时为0），否则返回-1
+     */
+    static int verifiedActId(CharSequence code, boolean hasId, SerialMac mac){
+        return verifyEntry(code, 0, code.length(), hasId, mac);
+    }
+
+    private static int verifyEntry(CharSequence code, int offset, int length, boolean hasId, SerialMac mac){
+        int start = hasId ? 1 : 0;
+        if(length <= start){
+            return -1;
+        }
+        long sum = CODEC.decode(code, offset + start, length - start);
+        return verifyEntry(sum, hasId ? CODEC.indexOf(code.charAt(offset)) : 0, length, hasId, mac);
+    }
+
+    /**
+     * @return 校验通过返回活动ID（不含活动ID时为0），否则返回-1
+     */
+    private static int verifyEntry(long sum, int idBitLength, int length, boolean hasId, SerialMac mac){
+        if(!verify(sum, mac) || idBitLength < 0){
+            return -1;
+        }
+        if(!hasId){
+            return 0;
+        }
+        int totalBitLength = charBitAlign * (length - 1);
+        return (int) (sum >> totalBitLength - idBitLength);
+    }
+
     /**
      * 按要求生成不重复兑换码
      * @param historyCodes 历史生成
@@ -172,6 +440,146 @@ public class VerifiableSerial {
         return generatedCodes;
     }
 
+    /**
+     * 按要求生成不重复兑换码的序列，直接在long上去重，需要输出时再通过serialToCode()转换为兑换码
+     * @param historySerials 历史生成的序列
+     * @param number 当前需要生成多少个
+     * @param codeLen 单个兑换码长度
+     * @param actId 活动ID
+     * @param offHeap 去重集合是否放在堆外
+     * @return
+     */
+    public static LongHashSet generateSerials(LongHashSet historySerials, int number, int codeLen, int actId, boolean offHeap){
+        codeLen = fitCodeLength(actId, codeLen);
+        long randRange = 1L << randBitLength(actId, codeLen);
+        LongHashSet generatedSerials = new LongHashSet(number, offHeap);
+        while(generatedSerials.size() < number){
+            long serial = composeSerial(actId, codeLen, (long)(randRange * Math.random()));
+            if(historySerials == null || !historySerials.contains(serial)){
+                generatedSerials.add(serial);
+            }
+        }
+        return generatedSerials;
+    }
+
+    public static LongHashSet generateSerials(LongHashSet historySerials, int number, int codeLen, int actId){
+        return generateSerials(historySerials, number, codeLen, actId, false);
+    }
+
+    /**
+     * 多线程并行生成恰好number个不重复兑换码的序列
+     *
+     * 每个线程使用独立的SplittableRandom（不再争用Math.random()背后共享的Random），
+     * 通过分片加锁的集合去重，吞吐量随CPU核数近似线性增长。
+     * 生成的序列与create()规则一致（活动ID、长度、校验位），可通过serialToCode()转换为兑换码
+     * @param historySerials 历史生成的序列，生成期间只读
+     * @param number 当前需要生成多少个
+     * @param codeLen 单个兑换码长度
+     * @param actId 活动ID
+     * @param parallelism 并行线程数
+     * @return
+     */
+    public static long[] generateSerialsParallel(LongHashSet historySerials, int number, int codeLen, int actId, int parallelism){
+        if(parallelism < 1){
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+        }
+        final int codeLength = fitCodeLength(actId, codeLen);
+        final long randRange = 1L << randBitLength(actId, codeLength);
+        final long[] serials = new long[number];
+        final AtomicInteger count = new AtomicInteger();
+        final ShardedLongHashSet generatedSerials = new ShardedLongHashSet(number, 32 - Integer.numberOfLeadingZeros(parallelism * 16 - 1), false);
+        SplittableRandom random = new SplittableRandom();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[parallelism];
+            for (int i = 0; i < parallelism; i++) {
+                final SplittableRandom workerRandom = random.split();
+                tasks[i] = pool.submit(() -> {
+                    while (count.get() < number) {
+                        long serial = composeSerial(actId, codeLength, workerRandom.nextLong(randRange));
+                        if((historySerials == null || !historySerials.contains(serial)) && generatedSerials.add(serial)){
+                            int index = count.getAndIncrement();
+                            if(index >= number){
+                                break;
+                            }
+                            serials[index] = serial;
+                        }
+                    }
+                });
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return serials;
+    }
+
+    /**
+     * 置换模式：对活动内的计数器index做带密钥的双射置换，结果作为随机数据位
+     *
+     * 同一(key, actId, codeLength)下，不同的index一定得到不同的兑换码，无需去重集合，也不会因空间填满而反复重试；
+     * 不知道key时兑换码依然不可推测；任意index的兑换码都可以O(1)内存重新生成，也可以由兑换码反查index
+     * @param key 活动密钥
+     * @param actId 活动ID
+     * @param codeLength 单个兑换码长度
+     * @return 置换器，定义域即index的取值范围 [0, 2^随机数据位数)
+     */
+    public static FeistelPermutation permutation(long key, int actId, int codeLength){
+        int randBitLength = randBitLength(actId, fitCodeLength(actId, codeLength));
+        return new FeistelPermutation(key ^ ((long) actId * 0x9E3779B97F4A7C15L), randBitLength);
+    }
+
+    /**
+     * 置换模式生成第index个兑换码，@see permutation()
+     * @param key 活动密钥
+     * @param actId 活动ID
+     * @param codeLength 单个兑换码长度
+     * @param index 活动内计数器
+     * @return
+     */
+    public static String createAt(long key, int actId, int codeLength, long index){
+        return serialToCode(serialAt(permutation(key, actId, codeLength), actId, codeLength, index), actId, codeLength);
+    }
+
+    /**
+     * 置换模式生成第index个兑换码的序列
+     * @param permutation @see permutation()，同一活动可复用
+     */
+    public static long serialAt(FeistelPermutation permutation, int actId, int codeLength, long index){
+        return composeSerial(actId, fitCodeLength(actId, codeLength), permutation.permute(index));
+    }
+
+    /**
+     * 置换模式批量生成 [fromIndex, fromIndex + number) 的序列，结果天然不重复
+     */
+    public static long[] generateSerials(long key, int actId, int codeLength, long fromIndex, int number){
+        FeistelPermutation permutation = permutation(key, actId, codeLength);
+        int fitLength = fitCodeLength(actId, codeLength);
+        long[] serials = new long[number];
+        for (int i = 0; i < number; i++) {
+            serials[i] = composeSerial(actId, fitLength, permutation.permute(fromIndex + i));
+        }
+        return serials;
+    }
+
+    /**
+     * 由置换模式生成的兑换码反查其index
+     * @param permutation @see permutation()
+     * @param code 兑换码
+     * @param hasId 是否包含活动ID
+     * @return 校验失败返回-1
+     */
+    public static long indexOf(FeistelPermutation permutation, String code, boolean hasId){
+        long sum = getSerial(code, hasId);
+        if(!verify(sum)){
+            return -1;
+        }
+        long randData = (sum >> checkBitLength) & ((1L << permutation.bits()) - 1);
+        return permutation.inverse(randData);
+    }
+
     /**
      * 按要求生成不重复兑换码（不加活动ID前缀）
      * @param historyCodes 历史生成
@@ -0,0 +1,39 @@
+package net.ewant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * 兑换状态跟踪：置换模式下连续index的内存占用
+ */
+public class RedemptionTrackerTest {
+
+    private static final int ACT_ID = 7;
+
+    private static final int CODE_LEN = 12;
+
+    @Test
+    public void indexModeUsesAboutOneBitPerCode() {
+        int n = 1 << 20;
+        FeistelPermutation permutation = VerifiableSerial.permutation(0x5EEDL, ACT_ID, CODE_LEN);
+        RedemptionTracker tracker = new RedemptionTracker(ACT_ID, CODE_LEN, permutation);
+        String first = null;
+        for (int i = 0; i < n; i++) {
+            String code = VerifiableSerial.serialToCode(VerifiableSerial.serialAt(permutation, ACT_ID, CODE_LEN, i), ACT_ID, CODE_LEN);
+            assertTrue(tracker.tryRedeem(code));
+            if (first == null) {
+                first = code;
+            }
+        }
+        assertFalse(tracker.tryRedeem(first));
+        assertTrue(tracker.isRedeemed(first));
+        assertEquals(n, tracker.redeemedCount());
+
+        long bytes = tracker.memoryBytes();
+        System.out.printf("index mode: %d codes, %d bytes, %.2f bits/code%n", n, bytes, bytes * 8.0 / n);
+        assertTrue("memoryBytes " + bytes, bytes >= n / 8 && bytes < n / 8 * 1.2);
+    }
+}
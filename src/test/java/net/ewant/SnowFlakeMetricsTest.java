@@ -0,0 +1,79 @@
+package net.ewant;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.junit.Test;
+
+/**
+ * 运行指标：多线程读取时钟的竞争不能被记为时钟回拨
+ */
+public class SnowFlakeMetricsTest {
+
+    private static final int THREADS = Math.max(8, Runtime.getRuntime().availableProcessors());
+
+    private static final int IDS_PER_THREAD = 200000;
+
+    @Test
+    public void concurrentSnowFlakeMonotonicClock() throws Exception {
+        assertNoRegressions(new ConcurrentSnowFlake(SnowFlakeLayout.of(0, 10), -1, 1));
+    }
+
+    @Test
+    public void stripedSnowFlakeMonotonicClock() throws Exception {
+        // 2个通道，每个通道被多个线程共用
+        assertNoRegressions(new StripedSnowFlake(1, 8, 1));
+    }
+
+    @Test
+    public void clockRewindRecordedOnce() {
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        SnowFlake snowFlake = new ConcurrentSnowFlake(SnowFlakeLayout.of(0, 10), -1, 1);
+        snowFlake.setClock(now::get);
+        snowFlake.setBurstMode(10);
+        SnowFlakeMetrics metrics = snowFlake.enableMetrics();
+        snowFlake.nextId();
+        now.addAndGet(-3);
+        for (int i = 0; i < 1000; i++) {
+            snowFlake.nextId();
+        }
+        assertEquals(1, metrics.getClockBackwards());
+        assertEquals(0, metrics.getClockBackwardsRejected());
+        assertEquals(3, metrics.getMaxBackwardsMillis());
+    }
+
+    private static void assertNoRegressions(SnowFlake snowFlake) throws Exception {
+        // 单调时钟，每读取8次前进1毫秒，尽量让多个线程在毫秒边界上竞争
+        AtomicLong reads = new AtomicLong();
+        long start = System.currentTimeMillis();
+        LongSupplier clock = () -> start + (reads.incrementAndGet() >>> 3);
+        snowFlake.setClock(clock);
+        SnowFlakeMetrics metrics = snowFlake.enableMetrics();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        snowFlake.nextId();
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals((long) THREADS * IDS_PER_THREAD, metrics.getIssuedIds());
+        assertEquals("clock regressions", 0, metrics.getClockBackwards());
+    }
+}
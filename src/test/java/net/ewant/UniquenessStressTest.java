@@ -0,0 +1,361 @@
+package net.ewant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+import org.junit.Test;
+
+/**
+ * 唯一性压力测试：2048个实例、多线程、可控时钟
+ *
+ * 每个模拟实例使用独立的可控时钟，时钟按读取次数前进（每readsPerMilli次读取前进1毫秒），
+ * readsPerMilli大于序列号容量时每个毫秒都会耗尽序列号，覆盖等待/借用下一毫秒的路径；
+ * 另有后台线程随机回拨时钟（突发模式吸收），以及在可用年限的最后几毫秒内生成。
+ * 所有生成的序列号放入分片的原始long集合检查全局唯一，并输出每个实例的持续速率：
+ * 实际速率（墙上时间）与逻辑速率（可控时钟时间，即单实例的理论上限）。
+ *
+ * 每个实例生成的个数可通过 -Dstress.idsPerInstance=N 调大做长时间测试
+ */
+public class UniquenessStressTest {
+
+    private static final int INSTANCES = 2048;
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private static final int IDS_PER_INSTANCE = Integer.getInteger("stress.idsPerInstance", 2048);
+
+    /**
+     * 每次访问一个实例连续生成的个数：1次批量 + 若干单个 + 1次经编码往返
+     */
+    private static final int CHUNK = 64;
+
+    private static final int BATCH = 16;
+
+    @Test
+    public void snowFlakeThreadConfined() throws Exception {
+        SnowFlakeLayout layout = SnowFlakeLayout.of(0, 11);
+        long start = System.currentTimeMillis();
+        run("SnowFlake", layout, false, 4096, 0, i -> {
+            SnowFlake snowFlake = new SnowFlake(layout, -1, i);
+            return snowFlakeTarget(snowFlake, new FakeClock(start, 4096));
+        });
+    }
+
+    @Test
+    public void prefixIdGeneratorShared() throws Exception {
+        long start = System.currentTimeMillis();
+        run("PrefixIdGenerator", PrefixIdGenerator.LAYOUT, true, 4096, 0, i -> prefixTarget(i, start, 4096, 0));
+    }
+
+    @Test
+    public void fixedLengthIdGeneratorShared() throws Exception {
+        long start = System.currentTimeMillis();
+        run("FixedLengthIdGenerator", FixedLengthIdGenerator.LAYOUT, true, 4096, 0, i -> fixedLengthTarget(i, start, 4096, 0));
+    }
+
+    @Test
+    public void fixedLengthIdGeneratorClockBackwards() throws Exception {
+        long start = System.currentTimeMillis();
+        run("FixedLengthIdGenerator(rewind)", FixedLengthIdGenerator.LAYOUT, true, 512, 8, i -> fixedLengthTarget(i, start, 512, 16));
+    }
+
+    @Test
+    public void prefixIdGeneratorEndOfLife() throws Exception {
+        SnowFlakeLayout layout = PrefixIdGenerator.LAYOUT;
+        long start = layout.epoch() + layout.maxTimestamp() - 64;
+        run("PrefixIdGenerator(end of life)", layout, true, 4096, 0, i -> prefixTarget(i, start, 4096, 0));
+    }
+
+    @Test
+    public void fixedLengthIdGeneratorEndOfLife() throws Exception {
+        SnowFlakeLayout layout = FixedLengthIdGenerator.LAYOUT;
+        long start = layout.epoch() + layout.maxTimestamp() - 64;
+        run("FixedLengthIdGenerator(end of life)", layout, true, 4096, 0, i -> fixedLengthTarget(i, start, 4096, 0));
+    }
+
+    @Test
+    public void clockBackwardsRejectedWithoutBurstMode() {
+        FakeClock clock = new FakeClock(System.currentTimeMillis(), 4096);
+        SnowFlake snowFlake = new SnowFlake(FixedLengthIdGenerator.LAYOUT, -1, 2047);
+        snowFlake.setClock(clock);
+        long last = snowFlake.nextId();
+        clock.advance(2);
+        assertTrue(snowFlake.nextId() > last);
+        assertTrue(clock.rewind(1));
+        try {
+            snowFlake.nextId();
+            fail("Clock moved backwards but id was generated");
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getMessage().startsWith("Clock moved backwards"));
+        }
+    }
+
+    private static Target prefixTarget(int instanceId, long start, int readsPerMilli, long burstMillis) {
+        SnowFlake snowFlake = PrefixIdGenerator.newSnowFlake(instanceId, true);
+        FakeClock clock = new FakeClock(start, readsPerMilli);
+        snowFlake.setBurstMode(burstMillis);
+        return generatorTarget(new PrefixIdGenerator(snowFlake, 'P'), snowFlake, clock, 12);
+    }
+
+    private static Target fixedLengthTarget(int instanceId, long start, int readsPerMilli, long burstMillis) {
+        SnowFlake snowFlake = new ConcurrentSnowFlake(FixedLengthIdGenerator.LAYOUT, -1, instanceId);
+        FakeClock clock = new FakeClock(start, readsPerMilli);
+        snowFlake.setBurstMode(burstMillis);
+        return generatorTarget(new FixedLengthIdGenerator(snowFlake), snowFlake, clock, 12);
+    }
+
+    /**
+     * @param name 场景名称
+     * @param layout 位布局，用于检查序列号中的实例ID
+     * @param shared true时所有线程共享所有实例；false时实例按线程划分，每个实例只被一个线程使用
+     * @param readsPerMilli 可控时钟每前进1毫秒的读取次数
+     * @param maxRewindMillis 后台随机回拨的最大毫秒数，0表示不回拨
+     * @param factory 按实例ID创建被测对象
+     */
+    private static void run(String name, SnowFlakeLayout layout, boolean shared, int readsPerMilli, int maxRewindMillis,
+                            IntFunction<Target> factory) throws Exception {
+        Target[] targets = new Target[INSTANCES];
+        for (int i = 0; i < INSTANCES; i++) {
+            targets[i] = factory.apply(i);
+        }
+        int quota = Math.max(CHUNK, (shared ? IDS_PER_INSTANCE / THREADS : IDS_PER_INSTANCE) / CHUNK * CHUNK);
+        long total = (long) quota * (shared ? THREADS : 1) * INSTANCES;
+        ShardedLongHashSet issued = new ShardedLongHashSet((int) total, 8, false);
+        AtomicLong duplicates = new AtomicLong();
+        AtomicLong rewinds = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            long begin = System.nanoTime();
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                workers.add(pool.submit(() -> {
+                    long[] batch = new long[BATCH];
+                    for (int done = 0; done < quota; done += CHUNK) {
+                        // 共享时每个线程从不同的实例开始，尽量让多个线程同时落在同一实例上
+                        for (int k = 0; k < INSTANCES; k++) {
+                            int instance = shared ? (k + thread * INSTANCES / THREADS) % INSTANCES : k;
+                            if (!shared && instance % THREADS != thread) {
+                                continue;
+                            }
+                            Target target = targets[instance];
+                            target.nextBatch(batch);
+                            for (long serial : batch) {
+                                check(serial, instance, layout, issued, duplicates);
+                            }
+                            for (int n = BATCH; n < CHUNK - 1; n++) {
+                                check(target.next(), instance, layout, issued, duplicates);
+                            }
+                            check(target.nextViaCode(), instance, layout, issued, duplicates);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            Future<?> rewinder = null;
+            if (maxRewindMillis > 0) {
+                rewinder = pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (!allDone(workers)) {
+                        if (targets[random.nextInt(INSTANCES)].clock().rewind(1 + random.nextInt(maxRewindMillis))) {
+                            rewinds.incrementAndGet();
+                        }
+                        Thread.yield();
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> worker : workers) {
+                await(worker);
+            }
+            if (rewinder != null) {
+                await(rewinder);
+            }
+            long wallNanos = System.nanoTime() - begin;
+
+            double logicalRate = 0;
+            for (Target target : targets) {
+                logicalRate += (double) total / INSTANCES / target.clock().elapsedMillis() * 1000;
+            }
+            logicalRate /= INSTANCES;
+            double wallRate = (double) total / INSTANCES / wallNanos * 1e9;
+            System.out.printf("[stress] %-36s instances=%d threads=%d ids=%d duplicates=%d rewinds=%d wall=%dms "
+                            + "rate/instance: wall=%.0f/s logical=%.0f/s%n",
+                    name, INSTANCES, THREADS, total, duplicates.get(), rewinds.get(), wallNanos / 1000000,
+                    wallRate, logicalRate);
+
+            assertEquals(name + " duplicates", 0, duplicates.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void check(long serial, int instance, SnowFlakeLayout layout, ShardedLongHashSet issued, AtomicLong duplicates) {
+        if (serial < 0 || layout.machineOf(serial) != instance) {
+            throw new AssertionError("Serial " + serial + " does not belong to instance " + instance);
+        }
+        if (!issued.add(serial)) {
+            duplicates.incrementAndGet();
+        }
+    }
+
+    private static boolean allDone(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void await(Future<?> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * 被测对象：一个模拟实例
+     */
+    private interface Target {
+        long next();
+
+        /**
+         * 生成编码并解码回序列号，同时检查编码长度
+         */
+        long nextViaCode();
+
+        void nextBatch(long[] dst);
+
+        FakeClock clock();
+    }
+
+    private static Target snowFlakeTarget(SnowFlake snowFlake, FakeClock clock) {
+        snowFlake.setClock(clock);
+        return new Target() {
+            @Override
+            public long next() {
+                return snowFlake.nextId();
+            }
+
+            @Override
+            public long nextViaCode() {
+                return snowFlake.nextId();
+            }
+
+            @Override
+            public void nextBatch(long[] dst) {
+                snowFlake.nextIds(dst);
+            }
+
+            @Override
+            public FakeClock clock() {
+                return clock;
+            }
+        };
+    }
+
+    private static Target generatorTarget(IdGenerator generator, SnowFlake snowFlake, FakeClock clock, int codeLength) {
+        snowFlake.setClock(clock);
+        return new Target() {
+            @Override
+            public long next() {
+                return generator.nextSerial();
+            }
+
+            @Override
+            public long nextViaCode() {
+                String code = generator.nextCode();
+                if (code.length() != codeLength) {
+                    throw new AssertionError("Code " + code + " is not " + codeLength + " chars");
+                }
+                return generator.getSerial(code);
+            }
+
+            @Override
+            public void nextBatch(long[] dst) {
+                generator.nextSerials(dst);
+            }
+
+            @Override
+            public FakeClock clock() {
+                return clock;
+            }
+        };
+    }
+
+    /**
+     * 可控时钟：每readsPerMilli次读取前进1毫秒，可手动前进或回拨
+     */
+    static final class FakeClock implements LongSupplier {
+
+        private final long start;
+
+        private final int readsPerMilli;
+
+        private final AtomicLong now;
+
+        private final AtomicLong reads = new AtomicLong();
+
+        private final AtomicLong rewound = new AtomicLong();
+
+        private volatile long peak;
+
+        FakeClock(long start, int readsPerMilli) {
+            this.start = start;
+            this.readsPerMilli = readsPerMilli;
+            this.now = new AtomicLong(start);
+        }
+
+        @Override
+        public long getAsLong() {
+            if (reads.incrementAndGet() % readsPerMilli == 0) {
+                return now.incrementAndGet();
+            }
+            return now.get();
+        }
+
+        void advance(long millis) {
+            now.addAndGet(millis);
+        }
+
+        /**
+         * 回拨时钟，上一次回拨尚未追回（未超过回拨前的时间）时不回拨，避免回拨累积超出突发模式的领先上限
+         * @return 是否回拨
+         */
+        boolean rewind(long millis) {
+            long current = now.get();
+            if (current < peak || !now.compareAndSet(current, current - millis)) {
+                return false;
+            }
+            peak = current;
+            rewound.addAndGet(millis);
+            return true;
+        }
+
+        /**
+         * @return 经过的逻辑毫秒数（不计回拨，含当前毫秒）
+         */
+        long elapsedMillis() {
+            return now.get() - start + rewound.get() + 1;
+        }
+    }
+}